@@ -0,0 +1,76 @@
+package gsmith.chaos.benchmarks;
+
+import gsmith.chaos.color.ColorPalette;
+import gsmith.chaos.color.DefaultColorPalette;
+import gsmith.chaos.color.GradientColorPalette;
+import gsmith.chaos.color.MultiGradientColorPalette;
+import gsmith.chaos.color.RandomColorPalette;
+
+import java.awt.Color;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** {@link ColorPalette#getColor} for each of the palettes, cycling through the iteration counts of a render as it
+ * would be called per pixel. The caching palettes are warmed up first, so this is their cache lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColorPaletteBenchmark {
+    @Param({ "default", "random", "gradient", "multi-gradient" })
+    public String palette;
+
+    @Param({ "50", "2000" })
+    public int maxIterations;
+
+    private ColorPalette colors;
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        switch (palette) {
+            case "default":
+                colors = new DefaultColorPalette();
+                break;
+            case "random":
+                colors = new RandomColorPalette();
+                break;
+            case "gradient":
+                colors = new GradientColorPalette();
+                break;
+            case "multi-gradient":
+                colors = new MultiGradientColorPalette();
+                break;
+            default:
+                throw new IllegalArgumentException("invalid 'palette' value '" + palette + "'");
+        }
+        colors.init(new Properties(), maxIterations);
+        for (int i = 0; i <= maxIterations; i++) {
+            colors.getColor(i);
+        }
+    }
+
+    @Benchmark
+    public Color getColor() {
+        // 0 through maxIterations, as a render's pixels give
+        if (++index > maxIterations) {
+            index = 0;
+        }
+        return colors.getColor(index);
+    }
+}
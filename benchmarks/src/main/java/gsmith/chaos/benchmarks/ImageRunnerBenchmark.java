@@ -0,0 +1,62 @@
+package gsmith.chaos.benchmarks;
+
+import gsmith.chaos.DrawMapContext;
+import gsmith.chaos.IterationBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** A whole render with {@link gsmith.chaos.ImageRunner#run}, on the example configs, into an
+ * {@link IterationBuffer} as the real renders do. The examples are read from the examples.dir system property, which
+ * the jmh task sets, or image-gen/examples under the current directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ImageRunnerBenchmark {
+    @Param({ "order3", "order4" })
+    public String example;
+
+    @Param({ "default", "adaptive" })
+    public String runner;
+
+    private DrawMapContext ctx;
+    private IterationBuffer buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        File dir = new File(System.getProperty("examples.dir", "image-gen/examples"));
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(new File(dir, example + ".properties").toPath())) {
+            p.load(in);
+        }
+        p.setProperty("runner", runner);
+        ctx = DrawMapContext.create(p);
+        buffer = new IterationBuffer(ctx);
+    }
+
+    @Benchmark
+    public IterationBuffer run() {
+        ctx.getImageRunner().run(ctx, (x, y, i, j, numIterations) -> buffer.set(i, j, numIterations)).join();
+        return buffer;
+    }
+}
@@ -0,0 +1,78 @@
+package gsmith.math.benchmarks;
+
+import gsmith.math.Complex;
+import gsmith.math.ComplexPolynomial;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** {@link ComplexPolynomial#f(Complex, Complex[])} by degree, without derivatives, with f'(x) as Newton's method
+ * uses, and with f'(x) and f''(x) as Halley's and Laguerre's methods use.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ComplexPolynomialBenchmark {
+    @Param({ "3", "5", "8", "16" })
+    public int degree;
+
+    private ComplexPolynomial eq;
+    private Complex x;
+    private final Complex[] deriv1 = new Complex[1];
+    private final Complex[] deriv2 = new Complex[2];
+
+    @Setup
+    public void setup() {
+        eq = randomPolynomial(degree, 1L);
+        x = new Complex(0.3, -0.7);
+        // make the derivative coefficients up front, so the first call isn't measured
+        eq.f(x, deriv2);
+    }
+
+    @Benchmark
+    public Complex f() {
+        return eq.f(x, null);
+    }
+
+    @Benchmark
+    public void fDerivative(Blackhole bh) {
+        bh.consume(eq.f(x, deriv1));
+        bh.consume(deriv1[0]);
+    }
+
+    @Benchmark
+    public void fSecondDerivative(Blackhole bh) {
+        bh.consume(eq.f(x, deriv2));
+        bh.consume(deriv2[0]);
+        bh.consume(deriv2[1]);
+    }
+
+    /** Make a polynomial with roots spread around the unit circle, the same for the same seed.
+     */
+    static ComplexPolynomial randomPolynomial(int degree, long seed) {
+        Random r = new Random(seed);
+        Complex[] roots = new Complex[degree];
+        for (int i = 0; i < degree; i++) {
+            double angle = 2.0 * Math.PI * (i + 0.5 * r.nextDouble()) / degree;
+            double magnitude = 0.5 + r.nextDouble();
+            roots[i] = new Complex(magnitude * Math.cos(angle), magnitude * Math.sin(angle));
+        }
+        return ComplexPolynomial.fromRoots(roots);
+    }
+}
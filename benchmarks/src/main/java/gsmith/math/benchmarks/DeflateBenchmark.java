@@ -0,0 +1,58 @@
+package gsmith.math.benchmarks;
+
+import gsmith.math.Complex;
+import gsmith.math.ComplexPolynomial;
+import gsmith.math.ComplexRootFinder;
+import gsmith.math.MuellersMethod;
+import gsmith.math.NewtonsMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Finding all the roots of a polynomial with {@link ComplexPolynomial#deflate}, by degree.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeflateBenchmark {
+    @Param({ "3", "5", "8", "12", "20" })
+    public int degree;
+
+    @Param({ "mueller", "newton" })
+    public String finder;
+
+    private ComplexPolynomial eq;
+    private ComplexRootFinder rootFinder;
+    private final Complex x0 = new Complex(0.5, 0.5);
+    private final Complex x1 = new Complex(0.4, 0.5);
+    private final Complex x2 = new Complex(0.3, 0.5);
+
+    @Setup
+    public void setup() {
+        eq = ComplexPolynomialBenchmark.randomPolynomial(degree, 1L);
+        rootFinder = "newton".equals(finder) ? new NewtonsMethod() : new MuellersMethod();
+    }
+
+    @Benchmark
+    public List<Complex> deflate() {
+        List<Complex> roots = new ArrayList<>(degree);
+        eq.deflate(x0, x1, x2, 1e-12, 200, roots, rootFinder);
+        return roots;
+    }
+}
@@ -0,0 +1,85 @@
+package gsmith.math.benchmarks;
+
+import gsmith.math.Complex;
+import gsmith.math.ComplexPolynomial;
+import gsmith.math.ComplexRootFinder;
+import gsmith.math.MuellersMethod;
+import gsmith.math.NewtonsMethod;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The root finders, per pixel, on z^n - 1 as in the examples. Each invocation does every pixel of a
+ * {@value #GRID}x{@value #GRID} grid over [-2, 2] x [-2, 2], which has the usual mix of fast pixels in the basins and
+ * slow ones on their boundaries, with the starting points made as {@code GenericKernel} makes them; the score is the
+ * average per pixel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RootFinderBenchmark {
+    private static final int GRID = 32;
+    private static final Complex EPSILON = new Complex(0.1, 0.0);
+    private static final Complex EPSILON2 = new Complex(0.2, 0.0);
+
+    @Param({ "newton", "mueller" })
+    public String finder;
+
+    @Param({ "3", "5" })
+    public int degree;
+
+    private ComplexRootFinder rootFinder;
+    private ComplexPolynomial eq;
+    private double tolerance = 0.001;
+    private int maxIterations = 50;
+    private final Complex[] rootHolder = new Complex[1];
+    private final Complex[] x0s = new Complex[GRID * GRID];
+    private final Complex[] x1s = new Complex[GRID * GRID];
+    private final Complex[] x2s = new Complex[GRID * GRID];
+
+    @Setup
+    public void setup() {
+        rootFinder = "mueller".equals(finder) ? new MuellersMethod() : new NewtonsMethod();
+        double[] a = new double[degree + 1];
+        a[0] = -1.0;
+        a[degree] = 1.0;
+        eq = new ComplexPolynomial(a);
+        for (int i = 0; i < GRID; i++) {
+            for (int j = 0; j < GRID; j++) {
+                Complex x = new Complex(-2.0 + 4.0 * i / GRID, -2.0 + 4.0 * j / GRID);
+                x0s[i * GRID + j] = x;
+                x1s[i * GRID + j] = x.sub(EPSILON);
+                x2s[i * GRID + j] = x.sub(EPSILON2);
+            }
+        }
+    }
+
+    /** Find a root from each pixel.
+     *
+     * @return the total iterations, so none of it is dead code.
+     */
+    @Benchmark
+    @OperationsPerInvocation(GRID * GRID)
+    public int find() {
+        int total = 0;
+        for (int k = 0; k < x0s.length; k++) {
+            total += rootFinder.find(x0s[k], x1s[k], x2s[k], tolerance, maxIterations, eq, rootHolder);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,204 @@
+package gsmith.chaos;
+
+import gsmith.chaos.kernel.KernelCompiler;
+import gsmith.chaos.kernel.PixelKernel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** A multi-threaded runner that cuts the picture into tiles of about the same amount of work, rather than the same
+ * size. The iterations per pixel vary by a lot more than 50x between the insides of the basins and their boundaries,
+ * so equal-size tiles leave threads idle at the end while one of them grinds through a boundary tile.
+ * <p>
+ * It first renders every {@link #PREVIEW_STEP}th pixel across and down, which gives a cost estimate (the iteration
+ * count) for each cell of that coarse grid, and whose pixels are part of the final picture, so no work is wasted.
+ * Then it bisects the grid, along its longer side at the cost's midpoint, until each piece is under a target share of
+ * the total, and runs the pieces most expensive first, so that the cheap ones fill in at the end.
+ * <p>
+ * The pixel coordinates are the same as {@link ImageRunner.Default}'s, so the pictures are the same; the callback is
+ * called from several threads at once, for different pixels. Runners with the same number of threads share a pool, so
+ * renders running at once share its threads.
+ */
+public class AdaptiveImageRunner implements ImageRunner {
+    /** The distance between the preview's pixels.
+     */
+    public static final int PREVIEW_STEP = 8;
+    /** The number of tiles to aim for per thread.
+     */
+    private static final int TILES_PER_THREAD = 8;
+    /** The estimated cost of a pixel on top of its iterations, for the loop and callback.
+     */
+    private static final long PIXEL_OVERHEAD = 4L;
+
+    /** The thread pools, by number of threads. They're shared by every runner, since a runner is made for every
+     * context, and their threads don't keep the JVM running.
+     */
+    private static final ConcurrentMap<Integer, ExecutorService> POOLS = new ConcurrentHashMap<>();
+
+    private final int threads;
+
+    /** Constructor for a thread per processor.
+     */
+    public AdaptiveImageRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Constructor.
+     *
+     * @param threads the number of threads.
+     */
+    public AdaptiveImageRunner(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("illegal threads less than 1");
+        }
+        this.threads = threads;
+    }
+
+    /** Get the shared thread pool for a number of threads, made on first use.
+     */
+    private static ExecutorService getPool(int threads) {
+        return POOLS.computeIfAbsent(threads, n -> Executors.newFixedThreadPool(n, r -> {
+            Thread t = new Thread(r, "adaptive-runner");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Void> run(DrawMapContext ctx, Callback callback) {
+        ExecutorService pool = getPool(threads);
+        int width = ctx.getWidth();
+        int height = ctx.getHeight();
+        double[] xs = ctx.getXCoords();
+        double[] ys = ctx.getYCoords();
+
+        // the preview, in interleaved columns per thread
+        int cellsAcross = (width + PREVIEW_STEP - 1) / PREVIEW_STEP;
+        int cellsDown = (height + PREVIEW_STEP - 1) / PREVIEW_STEP;
+        long[] cellCosts = new long[cellsAcross * cellsDown];
+        int previewTasks = Math.min(threads, cellsAcross);
+        CompletableFuture<?>[] preview = new CompletableFuture<?>[previewTasks];
+        for (int t = 0; t < previewTasks; t++) {
+            int first = t;
+            preview[t] = CompletableFuture.runAsync(() -> {
+                PixelKernel kernel = KernelCompiler.compile(ctx);
+                for (int ci = first; ci < cellsAcross; ci += previewTasks) {
+                    int i = ci * PREVIEW_STEP;
+                    long cellWidth = Math.min(PREVIEW_STEP, width - i);
+                    for (int cj = 0; cj < cellsDown; cj++) {
+                        if (callback.isCancelled()) {
+                            throw new CancellationException();
+                        }
+                        int j = cj * PREVIEW_STEP;
+                        int numIter = kernel.find(xs[i], ys[j]);
+                        callback.callback(xs[i], ys[j], i, j, numIter);
+                        // exceeded and failed pixels are counted as maxIterations
+                        long cost = PIXEL_OVERHEAD + (numIter > 0 ? numIter : ctx.getMaxIterations());
+                        cellCosts[cj * cellsAcross + ci] = cost * cellWidth * Math.min(PREVIEW_STEP, height - j);
+                    }
+                }
+            }, pool);
+        }
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        CompletableFuture.allOf(preview).thenCompose(v -> {
+            List<long[]> tiles = planTiles(cellCosts, cellsAcross, cellsDown);
+            // most expensive first; the pool's queue is first in, first out
+            tiles.sort((a, b) -> Long.compare(b[4], a[4]));
+            CompletableFuture<?>[] renders = new CompletableFuture<?>[tiles.size()];
+            for (int k = 0; k < renders.length; k++) {
+                long[] tile = tiles.get(k);
+                renders[k] = CompletableFuture.runAsync(() -> renderTile(ctx, callback, xs, ys,
+                        (int)tile[0] * PREVIEW_STEP, (int)tile[1] * PREVIEW_STEP,
+                        Math.min((int)tile[2] * PREVIEW_STEP, width), Math.min((int)tile[3] * PREVIEW_STEP, height)),
+                        pool);
+            }
+            return CompletableFuture.allOf(renders);
+        }).whenComplete((v, ex) -> {
+            if (ex == null) {
+                result.complete(null);
+            }
+            else {
+                result.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ?
+                        ex.getCause() : ex);
+            }
+        });
+        return result;
+    }
+
+    /** Render the pixels of a tile that the preview didn't.
+     */
+    private static void renderTile(DrawMapContext ctx, Callback callback, double[] xs, double[] ys, int i0, int j0,
+            int i1, int j1) {
+        PixelKernel kernel = KernelCompiler.compile(ctx);
+        for (int i = i0; i < i1; i++) {
+            if (callback.isCancelled()) {
+                throw new CancellationException();
+            }
+            boolean previewColumn = i % PREVIEW_STEP == 0;
+            for (int j = j0; j < j1; j++) {
+                if (previewColumn && j % PREVIEW_STEP == 0) {
+                    continue;
+                }
+                callback.callback(xs[i], ys[j], i, j, kernel.find(xs[i], ys[j]));
+            }
+        }
+    }
+
+    /** Cut the preview grid into tiles of about the same cost.
+     *
+     * @return the tiles, as first cell across, first cell down, end cell across, end cell down, and cost.
+     */
+    private List<long[]> planTiles(long[] cellCosts, int cellsAcross, int cellsDown) {
+        // sums[(cj * (cellsAcross + 1)) + ci] is the cost of the cells above and left of (ci, cj)
+        int stride = cellsAcross + 1;
+        long[] sums = new long[stride * (cellsDown + 1)];
+        for (int cj = 0; cj < cellsDown; cj++) {
+            for (int ci = 0; ci < cellsAcross; ci++) {
+                sums[(cj + 1) * stride + ci + 1] = cellCosts[cj * cellsAcross + ci] + sums[cj * stride + ci + 1] +
+                        sums[(cj + 1) * stride + ci] - sums[cj * stride + ci];
+            }
+        }
+        long target = Math.max(sums[sums.length - 1] / ((long)threads * TILES_PER_THREAD), 1L);
+        List<long[]> tiles = new ArrayList<>();
+        split(sums, stride, 0, 0, cellsAcross, cellsDown, target, tiles);
+        return tiles;
+    }
+
+    private static long cost(long[] sums, int stride, int c0, int r0, int c1, int r1) {
+        return sums[r1 * stride + c1] - sums[r0 * stride + c1] - sums[r1 * stride + c0] + sums[r0 * stride + c0];
+    }
+
+    private static void split(long[] sums, int stride, int c0, int r0, int c1, int r1, long target,
+            List<long[]> tiles) {
+        long cost = cost(sums, stride, c0, r0, c1, r1);
+        if (cost <= target || (c1 - c0 == 1 && r1 - r0 == 1)) {
+            tiles.add(new long[] { c0, r0, c1, r1, cost });
+            return;
+        }
+        // cut the longer side where the cost on either side is closest to even
+        if (c1 - c0 >= r1 - r0) {
+            int cut = c0 + 1;
+            while (cut < c1 - 1 && 2 * cost(sums, stride, c0, r0, cut, r1) < cost) {
+                cut++;
+            }
+            split(sums, stride, c0, r0, cut, r1, target, tiles);
+            split(sums, stride, cut, r0, c1, r1, target, tiles);
+        }
+        else {
+            int cut = r0 + 1;
+            while (cut < r1 - 1 && 2 * cost(sums, stride, c0, r0, c1, cut) < cost) {
+                cut++;
+            }
+            split(sums, stride, c0, r0, c1, cut, target, tiles);
+            split(sums, stride, c0, cut, c1, r1, target, tiles);
+        }
+    }
+}
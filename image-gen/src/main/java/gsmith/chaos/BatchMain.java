@@ -0,0 +1,199 @@
+package gsmith.chaos;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Main class for writing many images in one JVM, on a shared pool of threads.
+ * Jobs come from manifests (one ".properties [out.png]" per line, relative to the manifest, # for comments) or from
+ * .properties files and globs of them; a job without an output gets the properties file's name with .png, in the
+ * output directory. Each job's memory is estimated from its size, and jobs only start while the total estimate
+ * for the jobs in flight fits in the heap budget, so a few huge images can't run the JVM out of memory.
+ */
+public class BatchMain {
+    /** The rough number of bytes per pixel for a job: the iteration counts, and the image built from them.
+     */
+    private static final int BYTES_PER_PIXEL = 8;
+    /** The rough fixed number of bytes for a job.
+     */
+    private static final long BYTES_PER_JOB = 1L << 20;
+
+    private static final class Job {
+        final File properties;
+        final File out;
+
+        Job(File properties, File out) {
+            this.properties = properties;
+            this.out = out;
+        }
+    }
+
+    public static void main(String... args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long heapBudget = Runtime.getRuntime().maxMemory() / 2L;
+        File outDir = new File(".");
+        int argi = 0;
+        try {
+            for (; argi < args.length && args[argi].startsWith("--"); argi++) {
+                if ("--threads".equals(args[argi]) && argi + 1 < args.length) {
+                    threads = Integer.parseInt(args[++argi]);
+                }
+                else if ("--heap-budget".equals(args[argi]) && argi + 1 < args.length) {
+                    heapBudget = Long.parseLong(args[++argi]) << 20;
+                }
+                else if ("--out".equals(args[argi]) && argi + 1 < args.length) {
+                    outDir = new File(args[++argi]);
+                }
+                else {
+                    usage(1);
+                }
+            }
+        }
+        catch (NumberFormatException ex) {
+            usage(1);
+        }
+        if (argi >= args.length || threads <= 0 || heapBudget <= 0L) {
+            usage(1);
+        }
+
+        List<Job> jobs = new ArrayList<>();
+        for (; argi < args.length; argi++) {
+            addJobs(args[argi], outDir, jobs);
+        }
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IOException("unable to create " + outDir);
+        }
+        System.out.println("Running " + jobs.size() + " jobs on " + threads + " threads with a " + (heapBudget >> 20) +
+                "MB heap budget");
+        System.exit(run(jobs, threads, heapBudget) ? 0 : 1);
+    }
+
+    private static void usage(Integer exit) {
+        System.err.println("Usage: java " + BatchMain.class.getName() +
+                " [--threads n] [--heap-budget MB] [--out dir] (manifest | file.properties | 'glob*.properties')...");
+        if (exit != null) {
+            System.exit(exit);
+        }
+    }
+
+    private static void addJobs(String arg, File outDir, List<Job> jobs) throws IOException {
+        if (arg.indexOf('*') >= 0 || arg.indexOf('?') >= 0 || arg.indexOf('[') >= 0 || arg.indexOf('{') >= 0) {
+            // a glob, only in the last part of the path
+            Path path = Paths.get(arg);
+            Path dir = path.getParent() != null ? path.getParent() : Paths.get(".");
+            List<Path> matches = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, path.getFileName().toString())) {
+                stream.forEach(matches::add);
+            }
+            matches.sort(null);
+            for (Path p : matches) {
+                jobs.add(new Job(p.toFile(), defaultOut(p.toFile(), outDir)));
+            }
+        }
+        else if (arg.endsWith(".properties")) {
+            jobs.add(new Job(new File(arg), defaultOut(new File(arg), outDir)));
+        }
+        else {
+            File manifest = new File(arg);
+            File base = manifest.getAbsoluteFile().getParentFile();
+            try (BufferedReader in = Files.newBufferedReader(manifest.toPath(), StandardCharsets.UTF_8)) {
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] parts = line.split("\\s+");
+                    File props = resolve(base, parts[0]);
+                    jobs.add(new Job(props, parts.length > 1 ? resolve(base, parts[1]) : defaultOut(props, outDir)));
+                }
+            }
+        }
+    }
+
+    private static File resolve(File base, String name) {
+        File f = new File(name);
+        return f.isAbsolute() ? f : new File(base, name);
+    }
+
+    private static File defaultOut(File props, File outDir) {
+        String name = props.getName();
+        int i = name.lastIndexOf('.');
+        return new File(outDir, (i > 0 ? name.substring(0, i) : name) + ".png");
+    }
+
+    /** Run the jobs.
+     *
+     * @return true if they all succeeded.
+     */
+    private static boolean run(List<Job> jobs, int threads, long heapBudget) throws InterruptedException {
+        // permits are KB, to stay in int range
+        int budgetKB = (int)Math.min(heapBudget >> 10, Integer.MAX_VALUE);
+        Semaphore memory = new Semaphore(budgetKB, true);
+        AtomicInteger failures = new AtomicInteger();
+        AtomicLong pixels = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long startTime = System.nanoTime();
+        for (Job job : jobs) {
+            // execute rather than submit, and catch everything, so every job is reported; OutOfMemoryError is the
+            // likeliest failure here, and would otherwise vanish into a discarded Future
+            pool.execute(() -> {
+                try {
+                    Properties p = new Properties();
+                    try (InputStream in = new FileInputStream(job.properties)) {
+                        p.load(in);
+                    }
+                    DrawMapContext ctx = DrawMapContext.create(p);
+                    long size = (long)ctx.getWidth() * ctx.getHeight();
+                    // a job bigger than the whole budget runs by itself
+                    int kb = (int)Math.min((size * BYTES_PER_PIXEL + BYTES_PER_JOB) >> 10, budgetKB);
+                    memory.acquire(kb);
+                    // time the render, not the wait for memory
+                    long jobStart = System.nanoTime();
+                    try {
+                        IterationBuffer buffer = new IterationBuffer(ctx);
+                        ctx.getImageRunner().run(ctx, (x, y, i, j, numIterations) ->
+                                buffer.set(i, j, numIterations)).get();
+                        PaletteImages.writePNG(buffer.toImage(ctx), job.out);
+                    }
+                    finally {
+                        memory.release(kb);
+                    }
+                    pixels.addAndGet(size);
+                    long ms = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - jobStart), 1L);
+                    System.out.println("ok     " + job.properties + " -> " + job.out + " " + ctx.getWidth() + "x" +
+                            ctx.getHeight() + " in " + ms + "ms (" + String.format("%.2f", size / 1000.0 / ms) +
+                            " Mpixels/s)");
+                }
+                catch (Throwable ex) {
+                    failures.incrementAndGet();
+                    System.out.println("FAILED " + job.properties + ": " +
+                            (ex instanceof ExecutionException && ex.getCause() != null ? ex.getCause() : ex));
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        long ms = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), 1L);
+        System.out.println(jobs.size() + " jobs, " + failures.get() + " failed, " + pixels.get() + " pixels in " + ms +
+                "ms (" + String.format("%.2f", pixels.get() / 1000.0 / ms) + " Mpixels/s, " +
+                String.format("%.2f", (jobs.size() - failures.get()) * 1000.0 / ms) + " jobs/s)");
+        return failures.get() == 0;
+    }
+}
@@ -0,0 +1,268 @@
+package gsmith.chaos;
+
+import gsmith.math.Complex;
+import gsmith.math.ComplexEquation;
+import gsmith.math.ComplexRootFinder;
+import gsmith.math.ResumableRootFinder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** A render that keeps the search state of every pixel that hit maxIterations, so that it can be continued to a
+ * higher maxIterations by only doing the extra iterations for those pixels. The pixels that converged or failed
+ * would give the same answer again, so they're kept as they are.
+ * <p>
+ * This needs a {@link ResumableRootFinder}, and goes through the root finder rather than a specialized kernel (so
+ * always in double precision), so that it can get at the search state. It can be saved to a file and continued by a
+ * later run.
+ */
+public class ContinuableRender {
+    private static final int FILE_MAGIC = 0x434f4e54; // CONT
+
+    private final int width;
+    private final int height;
+    private final int stateSize;
+    private int maxIterations;
+    private IterationBuffer counts;
+
+    // the unconverged pixels, as j * width + i, and their search states, stateSize re, im pairs each
+    private int numUnconverged = 0;
+    private int[] pixels = new int[16];
+    private double[] points;
+
+    private ContinuableRender(int width, int height, int maxIterations, int stateSize) {
+        this.width = width;
+        this.height = height;
+        this.maxIterations = maxIterations;
+        this.stateSize = stateSize;
+        this.counts = new IterationBuffer(width, height, maxIterations);
+        this.points = new double[pixels.length * stateSize * 2];
+    }
+
+    /** Render a context from scratch, keeping the search state of the pixels that hit maxIterations.
+     *
+     * @throws IllegalArgumentException thrown if the context's root finder can't be resumed.
+     */
+    public static ContinuableRender render(DrawMapContext ctx) throws IllegalArgumentException {
+        ResumableRootFinder rootFinder = resumable(ctx.getRootFinder());
+        ContinuableRender render = new ContinuableRender(ctx.getWidth(), ctx.getHeight(), ctx.getMaxIterations(),
+                rootFinder.getStateSize());
+        Complex[] state = new Complex[Math.max(rootFinder.getStateSize(), 3)];
+        Complex[] rootHolder = new Complex[1];
+        ComplexEquation equation = ctx.getRenderEquation();
+        // the same coordinates and starting points as ImageRunner.Default
+        double[] xs = ctx.getXCoords();
+        double[] ys = ctx.getYCoords();
+        for (int i = 0; i < xs.length; i++) {
+            for (int j = 0; j < ys.length; j++) {
+                state[0] = new Complex(xs[i], ys[j]);
+                state[1] = state[0].sub(0.1);
+                state[2] = state[0].sub(0.2);
+                int numIter = rootFinder.resume(state, 0, ctx.getTolerance(), ctx.getMaxIterations(),
+                        equation, rootHolder);
+                render.counts.set(i, j, numIter);
+                if (numIter == 0) {
+                    render.addUnconverged(j * render.width + i, state);
+                }
+            }
+        }
+        return render;
+    }
+
+    /** Continue the unconverged pixels up to the context's maxIterations.
+     *
+     * @param ctx the context, which must be the same render this was created from, except for maxIterations (which
+     *            can't be lower) and the palette.
+     * @throws IllegalArgumentException thrown if the context doesn't match this.
+     */
+    public void extend(DrawMapContext ctx) throws IllegalArgumentException {
+        if (ctx.getWidth() != width || ctx.getHeight() != height) {
+            throw new IllegalArgumentException("illegal size " + ctx.getWidth() + "x" + ctx.getHeight() +
+                    ", must be " + width + "x" + height);
+        }
+        if (ctx.getMaxIterations() < maxIterations) {
+            throw new IllegalArgumentException("illegal maxIterations " + ctx.getMaxIterations() +
+                    " less than the previous " + maxIterations);
+        }
+        ResumableRootFinder rootFinder = resumable(ctx.getRootFinder());
+        if (rootFinder.getStateSize() != stateSize) {
+            throw new IllegalArgumentException("rootFinder " + rootFinder.getClass().getName() +
+                    " doesn't match the previous one");
+        }
+
+        // the counts may need more bytes each now
+        IterationBuffer newCounts = new IterationBuffer(width, height, ctx.getMaxIterations());
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                newCounts.set(i, j, counts.get(i, j));
+            }
+        }
+
+        Complex[] state = new Complex[Math.max(stateSize, 3)];
+        Complex[] rootHolder = new Complex[1];
+        ComplexEquation equation = ctx.getRenderEquation();
+        int stillUnconverged = 0;
+        for (int k = 0; k < numUnconverged; k++) {
+            for (int s = 0, p = k * stateSize * 2; s < stateSize; s++, p += 2) {
+                state[s] = new Complex(points[p], points[p + 1]);
+            }
+            int numIter = rootFinder.resume(state, maxIterations, ctx.getTolerance(), ctx.getMaxIterations(),
+                    equation, rootHolder);
+            newCounts.set(pixels[k] % width, pixels[k] / width, numIter);
+            if (numIter == 0) {
+                // compact the ones still going to the front, in place
+                setUnconverged(stillUnconverged++, pixels[k], state);
+            }
+        }
+        numUnconverged = stillUnconverged;
+        maxIterations = ctx.getMaxIterations();
+        counts = newCounts;
+    }
+
+    private static ResumableRootFinder resumable(ComplexRootFinder rootFinder) {
+        if (!(rootFinder instanceof ResumableRootFinder)) {
+            throw new IllegalArgumentException("rootFinder " + rootFinder.getClass().getName() +
+                    " can't be resumed");
+        }
+        return (ResumableRootFinder)rootFinder;
+    }
+
+    private void addUnconverged(int pixel, Complex[] state) {
+        if (numUnconverged == pixels.length) {
+            pixels = Arrays.copyOf(pixels, pixels.length * 2);
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+        setUnconverged(numUnconverged++, pixel, state);
+    }
+
+    private void setUnconverged(int k, int pixel, Complex[] state) {
+        pixels[k] = pixel;
+        for (int s = 0, p = k * stateSize * 2; s < stateSize; s++, p += 2) {
+            points[p] = state[s].re;
+            points[p + 1] = state[s].im;
+        }
+    }
+
+    /** Get the iteration counts.
+     */
+    public IterationBuffer getCounts() {
+        return counts;
+    }
+
+    /** Get the maxIterations rendered to.
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /** Get the number of pixels that hit maxIterations.
+     */
+    public int getNumUnconverged() {
+        return numUnconverged;
+    }
+
+    /** Save this to a file, along with the properties the render was created from.
+     */
+    public void save(File f, Properties p) throws IOException {
+        ByteArrayOutputStream props = new ByteArrayOutputStream();
+        comparable(p).store(props, null);
+        File tmp = new File(f.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(
+                new FileOutputStream(tmp))))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(props.size());
+            props.writeTo(out);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(maxIterations);
+            out.writeInt(stateSize);
+            for (int j = 0; j < height; j++) {
+                for (int i = 0; i < width; i++) {
+                    out.writeInt(counts.get(i, j));
+                }
+            }
+            out.writeInt(numUnconverged);
+            for (int k = 0; k < numUnconverged; k++) {
+                out.writeInt(pixels[k]);
+            }
+            for (int k = 0, n = numUnconverged * stateSize * 2; k < n; k++) {
+                out.writeDouble(points[k]);
+            }
+        }
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Load a render saved by {@link #save}.
+     *
+     * @param f the file.
+     * @param p the properties of the render to continue, which must match the saved ones except for maxIterations and
+     *            the palette.
+     * @throws IOException thrown if the file is for a different render, or on error.
+     */
+    public static ContinuableRender load(File f, Properties p) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(
+                new FileInputStream(f))))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException(f + " is not a saved render");
+            }
+            byte[] propBytes = new byte[in.readInt()];
+            in.readFully(propBytes);
+            Properties saved = new Properties();
+            saved.load(new ByteArrayInputStream(propBytes));
+            if (!saved.equals(comparable(p))) {
+                throw new IOException(f + " is for a different render");
+            }
+            int width = in.readInt();
+            int height = in.readInt();
+            int maxIterations = in.readInt();
+            int stateSize = in.readInt();
+            if (width <= 0 || height <= 0 || maxIterations <= 0 || stateSize <= 0) {
+                throw new IOException(f + " is corrupt");
+            }
+            ContinuableRender render = new ContinuableRender(width, height, maxIterations, stateSize);
+            for (int j = 0; j < height; j++) {
+                for (int i = 0; i < width; i++) {
+                    render.counts.set(i, j, in.readInt());
+                }
+            }
+            int n = in.readInt();
+            render.pixels = new int[Math.max(n, 16)];
+            render.points = new double[render.pixels.length * stateSize * 2];
+            for (int k = 0; k < n; k++) {
+                render.pixels[k] = in.readInt();
+            }
+            for (int k = 0; k < n * stateSize * 2; k++) {
+                render.points[k] = in.readDouble();
+            }
+            render.numUnconverged = n;
+            return render;
+        }
+    }
+
+    /** Get the properties that have to match to continue a render; maxIterations and the palette can change.
+     */
+    private static Properties comparable(Properties p) {
+        Properties copy = new Properties();
+        p.forEach((key, value) -> {
+            String name = key.toString();
+            if (!name.equals("maxIterations") && !name.equals("palette") && !name.startsWith("palette.")) {
+                copy.setProperty(name, value.toString());
+            }
+        });
+        return copy;
+    }
+}
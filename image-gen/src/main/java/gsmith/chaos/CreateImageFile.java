@@ -1,72 +1,175 @@
 package gsmith.chaos;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicLong;
-
-import javax.imageio.ImageIO;
 
 /** Main class for writing a complex-number, root-finding image.
  */
 public class CreateImageFile {
     public static void main(String... args) throws Exception {
-        if (args.length < 2) {
+        boolean resume = false;
+        File stateDir = null;
+        File saveFile = null;
+        File continueFile = null;
+        int argi = 0;
+        for (; argi < args.length && args[argi].startsWith("--"); argi++) {
+            if ("--resume".equals(args[argi])) {
+                resume = true;
+            }
+            else if ("--state".equals(args[argi]) && argi + 1 < args.length) {
+                stateDir = new File(args[++argi]);
+            }
+            else if ("--save-unconverged".equals(args[argi]) && argi + 1 < args.length) {
+                saveFile = new File(args[++argi]);
+            }
+            else if ("--continue".equals(args[argi]) && argi + 1 < args.length) {
+                continueFile = new File(args[++argi]);
+            }
+            else {
+                usage(1);
+            }
+        }
+        if (args.length - argi < 2 || ((resume || stateDir != null) && (saveFile != null || continueFile != null))) {
             usage(1);
         }
 
         Properties p = new Properties();
-        try (InputStream in = new FileInputStream(args[0])) {
+        try (InputStream in = new FileInputStream(args[argi])) {
             p.load(in);
         }
         DrawMapContext ctx = DrawMapContext.create(p);
 
-        File out = new File(args[1]);
+        File out = new File(args[argi + 1]);
         System.out.println("Writing " + ctx.getEquation());
         System.out.println("to " + out.getAbsolutePath());
-        writeImage(out, ctx);
+        if (saveFile != null || continueFile != null) {
+            ContinuableRender render;
+            if (continueFile != null) {
+                render = ContinuableRender.load(continueFile, p);
+                System.out.println("continuing " + render.getNumUnconverged() + " unconverged pixels from " +
+                        render.getMaxIterations() + " iterations");
+                render.extend(ctx);
+            }
+            else {
+                render = ContinuableRender.render(ctx);
+            }
+            System.out.println("Done, " + render.getNumUnconverged() + " unconverged pixels");
+            PaletteImages.writePNG(render.getCounts().toImage(ctx), out);
+            if (saveFile != null) {
+                render.save(saveFile, p);
+            }
+        }
+        else if (resume || stateDir != null) {
+            if (stateDir == null) {
+                stateDir = new File(out.getPath() + ".state");
+            }
+            RenderCheckpoint checkpoint = resume ? RenderCheckpoint.resume(stateDir, p, ctx) :
+                    RenderCheckpoint.create(stateDir, p, ctx);
+            System.out.println("with checkpoints in " + stateDir.getAbsolutePath());
+            writeImage(out, ctx, checkpoint, resume);
+            checkpoint.delete();
+        }
+        else {
+            writeImage(out, ctx);
+        }
     }
 
     private static void usage(Integer exit) {
-        System.err.println("Usage: java " + CreateImageFile.class.getName() + " .properties out.png");
+        System.err.println("Usage: java " + CreateImageFile.class.getName() +
+                " [--state dir] [--resume] [--save-unconverged file] [--continue file] .properties out.png");
+        System.err.println("  --state dir              save completed tiles in dir as it goes (default out.png.state)");
+        System.err.println("  --resume                 resume a render from its saved tiles");
+        System.err.println("  --save-unconverged file  save the counts and the state of unconverged pixels to file");
+        System.err.println("  --continue file          continue the unconverged pixels in file to this maxIterations");
         if (exit != null) {
             System.exit(exit);
         }
     }
 
     private static void writeImage(File out, final DrawMapContext ctx) throws IOException, InterruptedException, ExecutionException {
-        BufferedImage im = new BufferedImage(ctx.getWidth(), ctx.getHeight(), BufferedImage.TYPE_INT_RGB);
-        final Graphics2D g = im.createGraphics();
-        g.setColor(Color.BLACK);
-        g.fillRect(0, 0, im.getWidth(), im.getHeight());
+        // the counts are kept compactly until the end, and then turned into an indexed image if the palette fits
+        IterationBuffer buffer = new IterationBuffer(ctx);
         try {
-            final long hashStep = ((long)ctx.getWidth() * (long)ctx.getHeight()) / 100L;
-            final AtomicLong counter = new AtomicLong(0L);
             System.out.println("#!#! x=" + ctx.getStartXCoord() + " to " + ctx.getEndXCoord() + " by " +
                     ctx.getStepX());
             System.out.println("#!#! y=" + ctx.getStartYCoord() + " to " + ctx.getEndYCoord() + " by " +
                     ctx.getStepY());
 
-            ctx.getImageRunner().run(ctx, (x, y, i, j, numIterations) -> {
-                Color c = ctx.getColorForIteration(numIterations);
-                g.setColor(c);
-                g.fillRect(i, j, 1, 1);
-                if (counter.incrementAndGet() % hashStep == 0) {
+            // a tile at a time, so the image runner decides how many threads to use, as for a whole render; the
+            // writer just takes the tiles as they come
+            TilePublisher publisher = new TilePublisher(ctx, RenderCheckpoint.TILE_SIZE, 1, 4);
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            publisher.subscribe(new TileFlow.Subscriber<TileResult>() {
+                @Override
+                public void onSubscribe(TileFlow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(TileResult tile) {
+                    tile.writeTo(buffer);
                     System.out.print('.');
                 }
-            }).get();
+
+                @Override
+                public void onError(Throwable throwable) {
+                    done.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    done.complete(null);
+                }
+            });
+            publisher.start();
+            done.get();
         }
         finally {
-            g.dispose();
             System.out.println();
         }
         System.out.println("Done");
-        ImageIO.write(im, "PNG", out);
+        PaletteImages.writePNG(buffer.toImage(ctx), out);
+    }
+
+    private static void writeImage(File out, final DrawMapContext ctx, RenderCheckpoint checkpoint, boolean resume)
+            throws IOException, InterruptedException, ExecutionException {
+        // render tile by tile, so each completed tile can be saved, and skip the ones that already were
+        IterationBuffer buffer = new IterationBuffer(ctx);
+        int tiles = checkpoint.getTilesAcross() * checkpoint.getTilesDown();
+        int resumed = 0;
+        for (int ty = 0; ty < checkpoint.getTilesDown(); ty++) {
+            for (int tx = 0; tx < checkpoint.getTilesAcross(); tx++) {
+                if (resume && readTile(checkpoint, tx, ty, buffer)) {
+                    resumed++;
+                }
+                else {
+                    int[] r = checkpoint.getTileRegion(tx, ty);
+                    DrawMapContext tileCtx = ctx.region(r[0], r[1], r[2], r[3]);
+                    tileCtx.getImageRunner().run(tileCtx, (x, y, i, j, numIterations) ->
+                            buffer.set(r[0] + i, r[1] + j, numIterations)).get();
+                    checkpoint.writeTile(tx, ty, buffer);
+                    System.out.print('.');
+                }
+            }
+        }
+        System.out.println();
+        System.out.println("Done, " + resumed + " of " + tiles + " tiles from checkpoint");
+        PaletteImages.writePNG(buffer.toImage(ctx), out);
+    }
+
+    private static boolean readTile(RenderCheckpoint checkpoint, int tx, int ty, IterationBuffer buffer) {
+        try {
+            return checkpoint.readTile(tx, ty, buffer);
+        }
+        catch (IOException ex) {
+            System.out.println();
+            System.out.println("Redoing unreadable checkpoint tile " + tx + ", " + ty + ": " + ex.getMessage());
+            return false;
+        }
     }
-}
\ No newline at end of file
+}
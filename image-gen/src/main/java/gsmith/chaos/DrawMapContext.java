@@ -9,13 +9,20 @@ import gsmith.math.Complex;
 import gsmith.math.ComplexEquation;
 import gsmith.math.ComplexPolynomial;
 import gsmith.math.ComplexRootFinder;
+import gsmith.math.ExpressionEquation;
+import gsmith.math.HalleysMethod;
+import gsmith.math.HouseholdersMethod;
+import gsmith.math.LaguerresMethod;
+import gsmith.math.ModifiedNewtonsMethod;
 import gsmith.math.MuellersMethod;
 import gsmith.math.NewtonsMethod;
+import gsmith.math.SparseComplexPolynomial;
+import gsmith.math.SurrogateEquation;
 
 import java.awt.Color;
 import java.util.Properties;
 
-public class DrawMapContext {
+public class DrawMapContext implements Cloneable {
     public static final double DEFAULT_ZOOM = 10.0;
     public static final double DEFAULT_TOLERANCE = 0.001;
     public static final int DEFAULT_MAX_ITERATIONS = 50;
@@ -23,6 +30,10 @@ public class DrawMapContext {
     public static final int DEFAULT_WIDTH = 400;
     public static final double DEFAULT_START_COORD = -2.0;
     public static final double DEFAULT_END_COORD = 2.0;
+    /** The narrowest surrogate cells, in pixels. Fitting a cell takes about 50 evaluations of the exact equation, and
+     * narrower cells aren't hit often enough in a render to pay that back.
+     */
+    public static final int MIN_SURROGATE_CELLS = 16;
 
     private ComplexEquation equation;
     private ComplexRootFinder rootFinder;
@@ -33,6 +44,10 @@ public class DrawMapContext {
     private double zoom = DEFAULT_ZOOM;
     private double tolerance = DEFAULT_TOLERANCE;
     private int maxIterations = DEFAULT_MAX_ITERATIONS;
+    private int surrogateCells = 0;
+    private double surrogateTolerance = SurrogateEquation.DEFAULT_TOLERANCE;
+    // the surrogate for the equation at the current step, made on first use
+    private SurrogateEquation surrogate = null;
 
     private int height = DEFAULT_HEIGHT;
     private int width = DEFAULT_WIDTH;
@@ -65,6 +80,33 @@ public class DrawMapContext {
         }
     }
 
+    /** Get a copy of this for a rectangle of this picture's pixels, with the same step between pixels. Pixel (i, j)
+     * of the result is pixel (x + i, y + j) of this, with exactly the same coordinates, so rendering the regions of
+     * a picture gives exactly the same picture.
+     */
+    public DrawMapContext region(int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > getWidth() || y + height > getHeight()) {
+            throw new IllegalArgumentException("illegal region " + width + "x" + height + " at (" + x + ", " + y +
+                    ") for size " + getWidth() + "x" + getHeight());
+        }
+        double stepX = getStepX();
+        double stepY = getStepY();
+        // accumulating on from these gives the rest of the region's coordinates, as in getXCoords()
+        double startX = getXCoords()[x];
+        double startY = getYCoords()[y];
+        DrawMapContext ctx = clone();
+        ctx.setWidth(width);
+        ctx.setHeight(height);
+        ctx.setStartXCoord(startX);
+        ctx.setEndXCoord(startX + width * stepX);
+        ctx.setStartYCoord(startY);
+        ctx.setEndYCoord(startY + height * stepY);
+        // keep the exact step, rather than one recomputed from the rounded coordinates
+        ctx.stepX = stepX;
+        ctx.stepY = stepY;
+        return ctx;
+    }
+
     /** Get the equation to draw.
      */
     public ComplexEquation getEquation() {
@@ -77,6 +119,52 @@ public class DrawMapContext {
         this.equation = equation;
     }
 
+    /** Get the equation to render with: the equation, or its surrogate if there is one. The surrogate's cells are
+     * {@link #getSurrogateCells} of this picture's pixels wide, but at least {@link #MIN_SURROGATE_CELLS}, so a copy
+     * with another step (another region or zoom) gets its own surrogate.
+     */
+    public synchronized ComplexEquation getRenderEquation() {
+        if (surrogateCells <= 0) {
+            return equation;
+        }
+        double cellSize = Math.max(surrogateCells, MIN_SURROGATE_CELLS) *
+                Math.max(Math.abs(getStepX()), Math.abs(getStepY()));
+        if (surrogate == null || surrogate.getExact() != equation || surrogate.getCellSize() != cellSize) {
+            surrogate = new SurrogateEquation(equation, cellSize, SurrogateEquation.DEFAULT_SAMPLES,
+                    surrogateTolerance, SurrogateEquation.DEFAULT_MAX_CELLS);
+        }
+        return surrogate;
+    }
+
+    /** Get the width, in pixels, of the cells of the equation's surrogate, or 0 for no surrogate.
+     */
+    public int getSurrogateCells() {
+        return this.surrogateCells;
+    }
+
+    /** Get the approximation error allowed in the surrogate, relative to the largest |f| sampled in a cell.
+     */
+    public double getSurrogateTolerance() {
+        return this.surrogateTolerance;
+    }
+
+    /** Set up the equation's surrogate, for expensive equations.
+     *
+     * @param cells the width, in pixels, of the surrogate's cells, or 0 for no surrogate.
+     * @param tolerance the approximation error allowed, relative to the largest |f| sampled in a cell.
+     */
+    public synchronized void setSurrogate(int cells, double tolerance) {
+        if (cells < 0) {
+            throw new IllegalArgumentException("illegal surrogate cells less than 0");
+        }
+        if (!(tolerance > 0.0)) {
+            throw new IllegalArgumentException("illegal surrogate tolerance less than or equal to 0");
+        }
+        this.surrogateCells = cells;
+        this.surrogateTolerance = tolerance;
+        this.surrogate = null;
+    }
+
     /** Get the root finder to use.
      */
     public ComplexRootFinder getRootFinder() {
@@ -252,6 +340,29 @@ public class DrawMapContext {
         return stepY;
     }
 
+    /** Get the x coordinates of the pixel columns. Each is the one before it plus the step, which is how
+     * {@link ImageRunner.Default} has always done it; every renderer uses these, so that tiled and whole renders of a
+     * picture are the same.
+     */
+    public double[] getXCoords() {
+        return coords(getStartXCoord(), getStepX(), getWidth());
+    }
+
+    /** Get the y coordinates of the pixel rows, accumulated as in {@link #getXCoords}.
+     */
+    public double[] getYCoords() {
+        return coords(getStartYCoord(), getStepY(), getHeight());
+    }
+
+    private static double[] coords(double start, double step, int n) {
+        double[] coords = new double[n];
+        double c = start;
+        for (int i = 0; i < n; c += step, i++) {
+            coords[i] = c;
+        }
+        return coords;
+    }
+
     /** Get the color to use for a root-finding process that took the specified
      * number of iterations.
      */
@@ -266,22 +377,28 @@ public class DrawMapContext {
      * @throws IllegalArgumentException thrown if the properties are invalid.
      */
     public static DrawMapContext create(Properties p) throws IllegalArgumentException {
-        int order = getInteger(p, "order", true, 1);
-
-        // read the equation coefficients
-        Complex[] a = new Complex[order + 1];
-        for (int i = 0; i < a.length; i++) {
-            Double re = getDouble(p, "coeff." + i + ".real", false, null);
-            Double im = getDouble(p, "coeff." + i + ".imag", false, null);
-
-            a[i] = new Complex(re != null ? re : 0.0, im != null ? im : 0.0);
-        }
+        ComplexEquation equation = createEquation(p);
 
         String str = p.getProperty("rootFinder");
         ComplexRootFinder rootFinder;
         if ("newton".equalsIgnoreCase(str)) {
             rootFinder = new NewtonsMethod();
         }
+        else if ("modified-newton".equalsIgnoreCase(str)) {
+            rootFinder = new ModifiedNewtonsMethod();
+        }
+        else if ("modified-newton-aitken".equalsIgnoreCase(str)) {
+            rootFinder = new ModifiedNewtonsMethod(true);
+        }
+        else if ("halley".equalsIgnoreCase(str)) {
+            rootFinder = new HalleysMethod();
+        }
+        else if ("householder".equalsIgnoreCase(str)) {
+            rootFinder = new HouseholdersMethod();
+        }
+        else if ("laguerre".equalsIgnoreCase(str)) {
+            rootFinder = new LaguerresMethod();
+        }
         else if ("mueller".equalsIgnoreCase(str)) {
             rootFinder = new MuellersMethod();
         }
@@ -297,7 +414,7 @@ public class DrawMapContext {
             throw new IllegalArgumentException("missing 'rootFinder'");
         }
 
-        DrawMapContext ctx = new DrawMapContext(new ComplexPolynomial(a), rootFinder);
+        DrawMapContext ctx = new DrawMapContext(equation, rootFinder);
 
         // read the other properties
         Double d = getDouble(p, "zoom", false, 0.0);
@@ -353,6 +470,13 @@ public class DrawMapContext {
             ctx.setEndYCoord(d);
         }
 
+        // expensive equations can be approximated piecewise, with cells this many pixels wide; 0 is off
+        i = getInteger(p, "surrogate", false, -1);
+        if (i != null) {
+            d = getDouble(p, "surrogate.tolerance", false, 0.0);
+            ctx.setSurrogate(i, d != null ? d : SurrogateEquation.DEFAULT_TOLERANCE);
+        }
+
         // load the color palette
         ctx.setColorPalette(createColorPalette(p, ctx.getMaxIterations()));
 
@@ -360,6 +484,23 @@ public class DrawMapContext {
         if (str == null || str.length() <= 0 || "default".equals(str)) {
             ctx.setImageRunner(new ImageRunner.Default());
         }
+        else if ("adaptive".equals(str)) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            String t = p.getProperty("runner.threads");
+            if (t != null) {
+                try {
+                    threads = Integer.parseInt(t.trim());
+                }
+                catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("invalid 'runner.threads'", ex);
+                }
+                if (threads <= 0) {
+                    throw new IllegalArgumentException("invalid 'runner.threads' value " + threads +
+                            ", must be greater than 0");
+                }
+            }
+            ctx.setImageRunner(new AdaptiveImageRunner(threads));
+        }
         else {
             try {
                 ctx.setImageRunner(Class.forName(str).asSubclass(ImageRunner.class).newInstance());
@@ -372,6 +513,28 @@ public class DrawMapContext {
         return ctx;
     }
 
+    private static ComplexEquation createEquation(Properties p) {
+        // an expression takes precedence over the coefficients
+        String str = p.getProperty("equation");
+        if (str != null && str.trim().length() > 0) {
+            return new ExpressionEquation(str);
+        }
+
+        int order = getInteger(p, "order", true, 1);
+
+        // read the equation coefficients
+        Complex[] a = new Complex[order + 1];
+        for (int i = 0; i < a.length; i++) {
+            Double re = getDouble(p, "coeff." + i + ".real", false, null);
+            Double im = getDouble(p, "coeff." + i + ".imag", false, null);
+
+            a[i] = new Complex(re != null ? re : 0.0, im != null ? im : 0.0);
+        }
+
+        // high-order equations with only a few terms are cheaper to evaluate term-by-term
+        return SparseComplexPolynomial.isSparse(a) ? new SparseComplexPolynomial(a) : new ComplexPolynomial(a);
+    }
+
     private static ColorPalette createColorPalette(Properties baseProps, int maxIterations) {
         String str = baseProps.getProperty("palette");
         ColorPalette palette = null;
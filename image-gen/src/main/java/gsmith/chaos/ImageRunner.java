@@ -1,6 +1,7 @@
 package gsmith.chaos;
 
-import gsmith.math.Complex;
+import gsmith.chaos.kernel.KernelCompiler;
+import gsmith.chaos.kernel.PixelKernel;
 
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
@@ -43,26 +44,19 @@ public interface ImageRunner {
     public final class Default implements ImageRunner {
         @Override
         public CompletableFuture<Void> run(DrawMapContext ctx, Callback callback) {
-            Complex EPSILON = new Complex(0.1, 0.0);
-            Complex EPSILON2 = new Complex(0.2, 0.0);
-            double x = ctx.getStartXCoord();
+            // specialize the root finding for this render up front
+            PixelKernel kernel = KernelCompiler.compile(ctx);
+            double[] xs = ctx.getXCoords();
+            double[] ys = ctx.getYCoords();
             try {
                 // for now we're doing this in the current thread, but we might run this against a thread pool at some point
-                for (int i = 0; i < ctx.getWidth(); x += ctx.getStepX(), i++) {
-                    double y = ctx.getStartYCoord();
-                    for (int j = 0; j < ctx.getHeight(); y += ctx.getStepY(), j++) {
+                for (int i = 0; i < xs.length; i++) {
+                    for (int j = 0; j < ys.length; j++) {
                         if (callback.isCancelled()) {
                             throw new CancellationException();
                         }
-                        Complex approx = new Complex(x, y);
-                        Complex[] rootHolder = new Complex[] {
-                            null
-                        };
-                        int numIter = ctx.getRootFinder().find(approx,
-                                approx.sub(EPSILON), approx.sub(EPSILON2),
-                                ctx.getTolerance(), ctx.getMaxIterations(),
-                                ctx.getEquation(), rootHolder);
-                        callback.callback(x, y, i, j, numIter);
+                        int numIter = kernel.find(xs[i], ys[j]);
+                        callback.callback(xs[i], ys[j], i, j, numIter);
                     }
                     if (callback.isCancelled()) {
                         throw new CancellationException();
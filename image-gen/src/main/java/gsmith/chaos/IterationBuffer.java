@@ -0,0 +1,319 @@
+package gsmith.chaos;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/** A compact store of the iteration count for each pixel of a render.
+ * Counts are stored in 1, 2 or 4 bytes each, depending on maxIterations, in square tiles. Once every pixel in a tile
+ * has been set, the tile is run-length encoded if that makes it smaller, which it usually does since most of a
+ * picture is large areas of the same count. Setting a pixel in an encoded tile decodes it again.
+ * <p>
+ * Counts are as from {@link ImageRunner.Callback#callback}: the number of iterations, 0 for exceeded maxIterations,
+ * or less than 0 for not found (which is stored as -1).
+ */
+public class IterationBuffer {
+    /** The width and height of each tile.
+     */
+    public static final int TILE_SIZE = 64;
+
+    private final int width;
+    private final int height;
+    private final int maxIterations;
+    private final int bytesPerValue;
+    private final int tilesAcross;
+    private final Tile[] tiles;
+
+    /** Constructor for a buffer with every pixel unset.
+     */
+    public IterationBuffer(int width, int height, int maxIterations) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("illegal size " + width + "x" + height);
+        }
+        if (maxIterations <= 0) {
+            throw new IllegalArgumentException("illegal maxIterations less than 1");
+        }
+        this.width = width;
+        this.height = height;
+        this.maxIterations = maxIterations;
+        // stored values are numIterations + 1, so -1 through maxIterations
+        this.bytesPerValue = maxIterations < 0xff ? 1 : maxIterations < 0xffff ? 2 : 4;
+        this.tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesDown = (height + TILE_SIZE - 1) / TILE_SIZE;
+        this.tiles = new Tile[tilesAcross * tilesDown];
+        for (int ty = 0; ty < tilesDown; ty++) {
+            for (int tx = 0; tx < tilesAcross; tx++) {
+                tiles[ty * tilesAcross + tx] = new Tile(Math.min(TILE_SIZE, width - tx * TILE_SIZE) *
+                        Math.min(TILE_SIZE, height - ty * TILE_SIZE));
+            }
+        }
+    }
+
+    /** Constructor for a buffer sized for the context.
+     */
+    public IterationBuffer(DrawMapContext ctx) {
+        this(ctx.getWidth(), ctx.getHeight(), ctx.getMaxIterations());
+    }
+
+    /** Get the width in pixels.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /** Get the height in pixels.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /** Get the maximum number of iterations this can hold.
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /** Get the number of bytes used for each count, before run-length encoding.
+     */
+    public int getBytesPerValue() {
+        return bytesPerValue;
+    }
+
+    /** Get the number of bytes currently used for the counts.
+     */
+    public long getStorageSize() {
+        long size = 0L;
+        for (Tile tile : tiles) {
+            synchronized (tile) {
+                size += tile.storageSize();
+            }
+        }
+        return size;
+    }
+
+    /** Set the count for a pixel.
+     *
+     * @param i the integer x position.
+     * @param j the integer y position.
+     * @param numIterations the count, 0 for exceeded maxIterations, less than 0 for not found.
+     */
+    public void set(int i, int j, int numIterations) {
+        if (numIterations > maxIterations) {
+            throw new IllegalArgumentException("illegal numIterations " + numIterations + " greater than " +
+                    maxIterations);
+        }
+        Tile tile = tile(i, j);
+        synchronized (tile) {
+            tile.set(offset(i, j), Math.max(numIterations, -1) + 1);
+        }
+    }
+
+    /** Get the count for a pixel, as passed to {@link #set} but with not found as -1. Pixels that haven't been set
+     * read as -1 too; use {@link #isSet} to tell them apart.
+     */
+    public int get(int i, int j) {
+        Tile tile = tile(i, j);
+        synchronized (tile) {
+            return tile.get(offset(i, j)) - 1;
+        }
+    }
+
+    /** Tell if a pixel has been set.
+     */
+    public boolean isSet(int i, int j) {
+        Tile tile = tile(i, j);
+        synchronized (tile) {
+            return tile.isSet(offset(i, j));
+        }
+    }
+
+    private Tile tile(int i, int j) {
+        if (i < 0 || i >= width || j < 0 || j >= height) {
+            throw new IndexOutOfBoundsException("pixel (" + i + ", " + j + ") out of range for size " + width + "x" +
+                    height);
+        }
+        return tiles[(j / TILE_SIZE) * tilesAcross + i / TILE_SIZE];
+    }
+
+    private int offset(int i, int j) {
+        int tileWidth = Math.min(TILE_SIZE, width - (i / TILE_SIZE) * TILE_SIZE);
+        return (j % TILE_SIZE) * tileWidth + i % TILE_SIZE;
+    }
+
+    /** Create an image of the counts, colored by the context's palette. This is a TYPE_BYTE_INDEXED image when the
+     * palette fits in 256 entries; see {@link PaletteImages}.
+     */
+    public BufferedImage toImage(DrawMapContext ctx) {
+        BufferedImage im = PaletteImages.createImage(ctx, width, height);
+        boolean indexed = im.getType() == BufferedImage.TYPE_BYTE_INDEXED;
+        int[] rgbs = indexed ? null : PaletteImages.createRGBs(ctx, Math.min(maxIterations, 0xffff));
+        WritableRaster raster = im.getRaster();
+        int[] row = new int[TILE_SIZE];
+        for (int ty = 0, t = 0; ty * TILE_SIZE < height; ty++) {
+            for (int tx = 0; tx < tilesAcross; tx++, t++) {
+                int x0 = tx * TILE_SIZE;
+                int y0 = ty * TILE_SIZE;
+                int tileWidth = Math.min(TILE_SIZE, width - x0);
+                int tileHeight = Math.min(TILE_SIZE, height - y0);
+                Tile tile = tiles[t];
+                synchronized (tile) {
+                    for (int y = 0; y < tileHeight; y++) {
+                        for (int x = 0; x < tileWidth; x++) {
+                            // stored value - 1 is the count, and the palette's index is the count, with not
+                            // found the same as exceeded
+                            int index = Math.max(tile.get(y * tileWidth + x) - 1, 0);
+                            row[x] = indexed ? index : index < rgbs.length ? rgbs[index] :
+                                    ctx.getColorForIteration(index).getRGB();
+                        }
+                        if (indexed) {
+                            raster.setSamples(x0, y0 + y, tileWidth, 1, 0, row);
+                        }
+                        else {
+                            im.setRGB(x0, y0 + y, tileWidth, 1, row, 0, tileWidth);
+                        }
+                    }
+                }
+            }
+        }
+        return im;
+    }
+
+    /** One tile's counts, either raw or run-length encoded.
+     */
+    private final class Tile {
+        private final int size;
+        /** The raw values, bytesPerValue each, or null if encoded.
+         */
+        private byte[] raw;
+        /** A bit for whether each raw value has been set, or null if encoded (when all have been).
+         */
+        private long[] written;
+        private int numWritten = 0;
+        /** The encoded values, bytesPerValue each, and the exclusive end offset of each run, or null if raw.
+         */
+        private byte[] runValues;
+        private int[] runEnds;
+
+        Tile(int size) {
+            this.size = size;
+            this.raw = new byte[size * bytesPerValue];
+            this.written = new long[(size + 63) / 64];
+        }
+
+        long storageSize() {
+            return raw != null ? raw.length + 8L * written.length : runValues.length + 4L * runEnds.length;
+        }
+
+        boolean isSet(int k) {
+            return raw == null || (written[k >>> 6] & (1L << k)) != 0L;
+        }
+
+        int get(int k) {
+            if (raw != null) {
+                return read(raw, k);
+            }
+            // binary search for the run containing k
+            int lo = 0;
+            int hi = runEnds.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (runEnds[mid] <= k) {
+                    lo = mid + 1;
+                }
+                else {
+                    hi = mid;
+                }
+            }
+            return read(runValues, lo);
+        }
+
+        void set(int k, int value) {
+            if (raw == null) {
+                if (get(k) == value) {
+                    return;
+                }
+                decode();
+            }
+            write(raw, k, value);
+            if ((written[k >>> 6] & (1L << k)) == 0L) {
+                written[k >>> 6] |= 1L << k;
+                if (++numWritten == size) {
+                    encode();
+                }
+            }
+        }
+
+        private void encode() {
+            int runs = 1;
+            for (int k = 1; k < size; k++) {
+                if (read(raw, k) != read(raw, k - 1)) {
+                    runs++;
+                }
+            }
+            // only worth it if it's smaller
+            if ((long)runs * (bytesPerValue + 4) >= raw.length + 8L * written.length) {
+                return;
+            }
+            byte[] values = new byte[runs * bytesPerValue];
+            int[] ends = new int[runs];
+            int run = 0;
+            for (int k = 1; k <= size; k++) {
+                if (k == size || read(raw, k) != read(raw, k - 1)) {
+                    write(values, run, read(raw, k - 1));
+                    ends[run++] = k;
+                }
+            }
+            runValues = values;
+            runEnds = ends;
+            raw = null;
+            written = null;
+        }
+
+        private void decode() {
+            byte[] values = new byte[size * bytesPerValue];
+            for (int run = 0, k = 0; run < runEnds.length; run++) {
+                int value = read(runValues, run);
+                for (; k < runEnds[run]; k++) {
+                    write(values, k, value);
+                }
+            }
+            raw = values;
+            written = new long[(size + 63) / 64];
+            Arrays.fill(written, -1L);
+            numWritten = size;
+            runValues = null;
+            runEnds = null;
+        }
+
+        private int read(byte[] a, int k) {
+            switch (bytesPerValue) {
+                case 1:
+                    return a[k] & 0xff;
+                case 2:
+                    return ((a[2 * k] & 0xff) << 8) | (a[2 * k + 1] & 0xff);
+                default:
+                    k *= 4;
+                    return (a[k] << 24) | ((a[k + 1] & 0xff) << 16) | ((a[k + 2] & 0xff) << 8) | (a[k + 3] & 0xff);
+            }
+        }
+
+        private void write(byte[] a, int k, int value) {
+            switch (bytesPerValue) {
+                case 1:
+                    a[k] = (byte)value;
+                    break;
+                case 2:
+                    a[2 * k] = (byte)(value >>> 8);
+                    a[2 * k + 1] = (byte)value;
+                    break;
+                default:
+                    k *= 4;
+                    a[k] = (byte)(value >>> 24);
+                    a[k + 1] = (byte)(value >>> 16);
+                    a[k + 2] = (byte)(value >>> 8);
+                    a[k + 3] = (byte)value;
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package gsmith.chaos;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.ImageIO;
+
+/** Helpers for images colored by a render's palette.
+ * When maxIterations is less than 256, every color the palette can produce fits in an {@link IndexColorModel}, so
+ * images are TYPE_BYTE_INDEXED at 1 byte per pixel instead of TYPE_INT_RGB at 4, and they encode to much smaller
+ * PNGs. Otherwise, images are TYPE_INT_RGB.
+ */
+public final class PaletteImages {
+    /** The most colors an indexed image can have.
+     */
+    public static final int MAX_INDEXED_COLORS = 256;
+
+    private PaletteImages() {
+    }
+
+    /** Tell if images for the context will be indexed.
+     */
+    public static boolean isIndexed(DrawMapContext ctx) {
+        // indexes 0 through maxIterations
+        return ctx.getMaxIterations() < MAX_INDEXED_COLORS;
+    }
+
+    /** Get the palette's colors for 0 through maxColor, as RGB ints.
+     */
+    public static int[] createRGBs(DrawMapContext ctx, int maxColor) {
+        int[] rgbs = new int[maxColor + 1];
+        for (int i = 0; i <= maxColor; i++) {
+            rgbs[i] = ctx.getColorForIteration(i).getRGB();
+        }
+        return rgbs;
+    }
+
+    /** Create a color model of the palette's colors for 0 through maxIterations.
+     *
+     * @throws IllegalArgumentException thrown if the context's palette doesn't fit in an indexed image.
+     */
+    public static IndexColorModel createColorModel(DrawMapContext ctx) throws IllegalArgumentException {
+        if (!isIndexed(ctx)) {
+            throw new IllegalArgumentException("maxIterations " + ctx.getMaxIterations() + " too large for " +
+                    MAX_INDEXED_COLORS + " colors");
+        }
+        int[] rgbs = createRGBs(ctx, ctx.getMaxIterations());
+        int bits = rgbs.length <= 2 ? 1 : rgbs.length <= 4 ? 2 : rgbs.length <= 16 ? 4 : 8;
+        return new IndexColorModel(bits, rgbs.length, rgbs, 0, false, -1, DataBuffer.TYPE_BYTE);
+    }
+
+    /** Create a blank image of the context's size for the context's palette.
+     */
+    public static BufferedImage createImage(DrawMapContext ctx) {
+        return createImage(ctx, ctx.getWidth(), ctx.getHeight());
+    }
+
+    /** Create a blank image of the specified size for the context's palette. Blank is black, or for an indexed
+     * image, the palette's color for 0 iterations (which is black for the built-in palettes).
+     */
+    public static BufferedImage createImage(DrawMapContext ctx, int width, int height) {
+        if (isIndexed(ctx)) {
+            BufferedImage im = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED,
+                    createColorModel(ctx));
+            // new rasters are all index 0
+            return im;
+        }
+        BufferedImage im = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = im.createGraphics();
+        try {
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, width, height);
+        }
+        finally {
+            g.dispose();
+        }
+        return im;
+    }
+
+    /** Set a pixel in an image from {@link #createImage} to the color for the specified number of iterations.
+     */
+    public static void setPixel(BufferedImage im, DrawMapContext ctx, int i, int j, int numIterations) {
+        if (im.getType() == BufferedImage.TYPE_BYTE_INDEXED) {
+            im.getRaster().setSample(i, j, 0, Math.max(numIterations, 0));
+        }
+        else {
+            im.setRGB(i, j, ctx.getColorForIteration(numIterations).getRGB());
+        }
+    }
+
+    /** Get an image as TYPE_INT_RGB, for writers that can't handle indexed images (like JPEG). This returns the
+     * image itself if it already is.
+     */
+    public static BufferedImage toRGB(BufferedImage im) {
+        if (im.getType() == BufferedImage.TYPE_INT_RGB) {
+            return im;
+        }
+        BufferedImage rgb = new BufferedImage(im.getWidth(), im.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.drawImage(im, 0, 0, null);
+        }
+        finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    /** Write an image as a PNG; if the PNG writer can't take it as it is, it's written as TYPE_INT_RGB.
+     */
+    public static void writePNG(BufferedImage im, File out) throws IOException {
+        if (!ImageIO.write(im, "PNG", out)) {
+            ImageIO.write(toRGB(im), "PNG", out);
+        }
+    }
+
+    /** Write an image as a PNG; if the PNG writer can't take it as it is, it's written as TYPE_INT_RGB.
+     */
+    public static void writePNG(BufferedImage im, OutputStream out) throws IOException {
+        // a false return means no writer took it, so nothing has been written yet
+        if (!ImageIO.write(im, "PNG", out)) {
+            ImageIO.write(toRGB(im), "PNG", out);
+        }
+    }
+}
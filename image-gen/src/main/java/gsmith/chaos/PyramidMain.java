@@ -0,0 +1,71 @@
+package gsmith.chaos;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+/** Main class for writing a picture as a tile pyramid; see {@link TilePyramid}. The properties' width and height are
+ * the size of the finest level.
+ */
+public class PyramidMain {
+    public static void main(String... args) throws Exception {
+        TilePyramid.Layout layout = TilePyramid.Layout.DZI;
+        int tileSize = TilePyramid.DEFAULT_TILE_SIZE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int argi = 0;
+        try {
+            for (; argi < args.length && args[argi].startsWith("--"); argi++) {
+                if ("--layout".equals(args[argi]) && argi + 1 < args.length) {
+                    layout = TilePyramid.Layout.valueOf(args[++argi].toUpperCase(Locale.ROOT));
+                }
+                else if ("--tile".equals(args[argi]) && argi + 1 < args.length) {
+                    tileSize = Integer.parseInt(args[++argi]);
+                }
+                else if ("--threads".equals(args[argi]) && argi + 1 < args.length) {
+                    threads = Integer.parseInt(args[++argi]);
+                }
+                else {
+                    usage(1);
+                }
+            }
+        }
+        catch (IllegalArgumentException ex) {
+            usage(1);
+        }
+        if (args.length - argi != 2) {
+            usage(1);
+        }
+
+        Properties p = new Properties();
+        try (InputStream in = new FileInputStream(args[argi])) {
+            p.load(in);
+        }
+        DrawMapContext ctx = DrawMapContext.create(p);
+        File out = new File(args[argi + 1]);
+        TilePyramid pyramid = new TilePyramid(ctx, out, layout, tileSize);
+        System.out.println("Writing " + ctx.getEquation());
+        System.out.println("to " + out.getAbsolutePath() + " as " + layout + ", " + (pyramid.getMaxLevel() + 1) +
+                " levels");
+        long startTime = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pyramid.run(pool);
+        }
+        finally {
+            pool.shutdown();
+        }
+        System.out.println("Done, " + pyramid.getTilesWritten() + " tiles in " +
+                (System.nanoTime() - startTime) / 1000000L + "ms");
+    }
+
+    private static void usage(Integer exit) {
+        System.err.println("Usage: java " + PyramidMain.class.getName() +
+                " [--layout dzi|xyz] [--tile n] [--threads n] .properties (out.dzi | outDir)");
+        if (exit != null) {
+            System.exit(exit);
+        }
+    }
+}
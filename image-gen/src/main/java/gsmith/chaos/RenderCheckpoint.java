@@ -0,0 +1,192 @@
+package gsmith.chaos;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** A directory holding the completed tiles of a render, so that a render that dies part way through can be resumed.
+ * The directory has the render's properties, to check that a resumed render is the same render, and one compressed
+ * file of iteration counts per completed tile. Tiles are written to a temporary file and then renamed, so a crash
+ * while writing one never leaves a partial tile behind.
+ */
+public class RenderCheckpoint {
+    /** The width and height of each tile.
+     */
+    public static final int TILE_SIZE = 256;
+
+    private static final String PROPERTIES_FILE = "render.properties";
+    private static final int TILE_MAGIC = 0x43484b54; // CHKT
+
+    private final File dir;
+    private final int width;
+    private final int height;
+
+    private RenderCheckpoint(File dir, DrawMapContext ctx) {
+        this.dir = dir;
+        this.width = ctx.getWidth();
+        this.height = ctx.getHeight();
+    }
+
+    /** Start a new checkpoint directory for a render. Any tiles left in the directory, without a checkpoint's
+     * properties, are deleted, so they can't end up in the new render.
+     *
+     * @param dir the directory, which must not already hold a checkpoint.
+     * @param p the properties the render was created from.
+     * @param ctx the render.
+     * @throws IOException thrown if the directory already holds a checkpoint, or on error.
+     */
+    public static RenderCheckpoint create(File dir, Properties p, DrawMapContext ctx) throws IOException {
+        File propsFile = new File(dir, PROPERTIES_FILE);
+        if (propsFile.exists()) {
+            throw new IOException("checkpoint already exists in " + dir + "; resume it, or delete it to start over");
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("unable to create checkpoint directory " + dir);
+        }
+        deleteTiles(dir);
+        File tmp = new File(dir, PROPERTIES_FILE + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            p.store(out, "render checkpoint, tile size " + TILE_SIZE);
+        }
+        Files.move(tmp.toPath(), propsFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return new RenderCheckpoint(dir, ctx);
+    }
+
+    /** Open an existing checkpoint directory for a render.
+     *
+     * @param dir the directory.
+     * @param p the properties the render was created from, which must match the ones in the checkpoint.
+     * @param ctx the render.
+     * @throws IOException thrown if the directory doesn't hold a checkpoint of the same render, or on error.
+     */
+    public static RenderCheckpoint resume(File dir, Properties p, DrawMapContext ctx) throws IOException {
+        File propsFile = new File(dir, PROPERTIES_FILE);
+        if (!propsFile.isFile()) {
+            throw new IOException("no checkpoint in " + dir);
+        }
+        Properties saved = new Properties();
+        try (InputStream in = new FileInputStream(propsFile)) {
+            saved.load(in);
+        }
+        if (!saved.equals(p)) {
+            throw new IOException("checkpoint in " + dir + " is for a different render");
+        }
+        return new RenderCheckpoint(dir, ctx);
+    }
+
+    /** Get the checkpoint directory.
+     */
+    public File getDirectory() {
+        return dir;
+    }
+
+    /** Get the number of tiles across the picture.
+     */
+    public int getTilesAcross() {
+        return (width + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    /** Get the number of tiles down the picture.
+     */
+    public int getTilesDown() {
+        return (height + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    /** Get the region of the picture for a tile, for {@link DrawMapContext#region}, as x, y, width, height.
+     */
+    public int[] getTileRegion(int tx, int ty) {
+        int x = tx * TILE_SIZE;
+        int y = ty * TILE_SIZE;
+        return new int[] { x, y, Math.min(TILE_SIZE, width - x), Math.min(TILE_SIZE, height - y) };
+    }
+
+    private File tileFile(int tx, int ty) {
+        return new File(dir, "tile-" + tx + "-" + ty + ".bin");
+    }
+
+    /** Read a completed tile into a buffer.
+     *
+     * @return true if the tile was read, false if it hasn't been completed.
+     * @throws IOException thrown if the tile's file is unreadable, in which case the tile needs to be done again.
+     */
+    public boolean readTile(int tx, int ty, IterationBuffer buffer) throws IOException {
+        File f = tileFile(tx, ty);
+        if (!f.isFile()) {
+            return false;
+        }
+        int[] r = getTileRegion(tx, ty);
+        int[] counts = new int[r[2] * r[3]];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(
+                new FileInputStream(f))))) {
+            if (in.readInt() != TILE_MAGIC || in.readInt() != r[0] || in.readInt() != r[1] || in.readInt() != r[2] ||
+                    in.readInt() != r[3]) {
+                throw new IOException("mismatched header in checkpoint tile " + f);
+            }
+            for (int k = 0; k < counts.length; k++) {
+                counts[k] = in.readInt();
+            }
+        }
+        for (int j = 0, k = 0; j < r[3]; j++) {
+            for (int i = 0; i < r[2]; i++, k++) {
+                buffer.set(r[0] + i, r[1] + j, counts[k]);
+            }
+        }
+        return true;
+    }
+
+    /** Save a completed tile from a buffer.
+     */
+    public void writeTile(int tx, int ty, IterationBuffer buffer) throws IOException {
+        int[] r = getTileRegion(tx, ty);
+        File f = tileFile(tx, ty);
+        File tmp = new File(dir, f.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(
+                new FileOutputStream(tmp))))) {
+            out.writeInt(TILE_MAGIC);
+            for (int v : r) {
+                out.writeInt(v);
+            }
+            for (int j = 0; j < r[3]; j++) {
+                for (int i = 0; i < r[2]; i++) {
+                    out.writeInt(buffer.get(r[0] + i, r[1] + j));
+                }
+            }
+        }
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Delete the checkpoint's files, and the directory if that leaves it empty, once the render is finished.
+     */
+    public void delete() throws IOException {
+        // the properties go last, so a directory that still has them still has all of its tiles
+        deleteTiles(dir);
+        Files.deleteIfExists(new File(dir, PROPERTIES_FILE + ".tmp").toPath());
+        Files.deleteIfExists(new File(dir, PROPERTIES_FILE).toPath());
+        String[] left = dir.list();
+        if (left != null && left.length == 0) {
+            Files.deleteIfExists(dir.toPath());
+        }
+    }
+
+    private static void deleteTiles(File dir) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("tile-") &&
+                (name.endsWith(".bin") || name.endsWith(".bin.tmp")));
+        if (files != null) {
+            for (File f : files) {
+                Files.deleteIfExists(f.toPath());
+            }
+        }
+    }
+}
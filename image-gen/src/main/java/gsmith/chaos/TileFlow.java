@@ -0,0 +1,44 @@
+package gsmith.chaos;
+
+/** Publish-subscribe interfaces for tiles of a render, with demand-based backpressure. These have the same shape
+ * and rules as java.util.concurrent.Flow (Reactive Streams), which isn't in Java 8; when this moves past Java 8,
+ * they can be replaced by that.
+ */
+public final class TileFlow {
+    private TileFlow() {
+    }
+
+    /** A producer of items for subscribers, each of which gets them as fast as it asks for them.
+     */
+    @FunctionalInterface
+    public static interface Publisher<T> {
+        /** Add a subscriber; it gets {@link Subscriber#onSubscribe} first, then its items, then
+         * {@link Subscriber#onComplete} or {@link Subscriber#onError}.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /** A consumer of items. Its methods are called one at a time, never concurrently.
+     */
+    public static interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    /** A subscriber's link to its publisher.
+     */
+    public static interface Subscription {
+        /** Ask for up to n more items; the demand adds up. n must be greater than 0.
+         */
+        void request(long n);
+
+        /** Stop getting items.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,393 @@
+package gsmith.chaos;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Renders a picture in tiles for any number of subscribers, each taking them at its own pace. This is the pull
+ * version of {@link ImageRunner}: rather than the render pushing every pixel at a callback, which has to keep up or
+ * buffer them all, subscribers ask for tiles as they're ready for them. Each tile is a {@link DrawMapContext#region}
+ * of the render, run with the context's image runner, so the pixels are the same as a whole render's.
+ * <p>
+ * All of the subscribers share the one render, and the same {@link TileResult} objects. Subscribe them all, then
+ * {@link #start}; they each get every tile, in the order the tiles finish. Finished tiles are kept until every
+ * subscriber has had them, and the render only runs up to {@link #getBufferTiles} tiles ahead of the slowest
+ * subscriber, so a slow one (a PNG encoder, say, or a network connection) holds back the render rather than making
+ * it buffer without limit. If every subscriber cancels, even before the start, the render stops.
+ * <p>
+ * Like java.util.concurrent.SubmissionPublisher, each subscriber's signals are delivered by tasks on an executor, one
+ * at a time, never on the render threads; so a subscriber that blocks only holds back the render through the buffer
+ * limit. A subscriber whose method throws is cancelled, and gets the exception in {@link TileFlow.Subscriber#onError}.
+ */
+public class TilePublisher implements TileFlow.Publisher<TileResult> {
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    /** The default executor for delivering to subscribers; a cached pool, since subscribers may block.
+     */
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "tile-subscriber");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final DrawMapContext ctx;
+    private final int tileSize;
+    private final int threads;
+    private final int bufferTiles;
+    private final int tilesAcross;
+    private final int numTiles;
+    private final Executor executor;
+
+    // all guarded by this
+    private final List<Sub> subscribers = new ArrayList<>();
+    /** The finished tiles not yet had by every subscriber; the first is tile number {@link #firstBuffered}.
+     */
+    private final ArrayDeque<TileResult> buffered = new ArrayDeque<>();
+    private int firstBuffered = 0;
+    private int finished = 0;
+    private int nextToRender = 0;
+    private boolean started = false;
+    private volatile boolean stopped = false;
+    private Throwable error = null;
+
+    /** Constructor, delivering to subscribers on a shared pool of threads.
+     *
+     * @param ctx the render.
+     * @param tileSize the width and height of each tile.
+     * @param threads the number of tiles to render at once; the image runner may use more threads for each.
+     * @param bufferTiles the number of finished tiles that can wait for the slowest subscriber.
+     */
+    public TilePublisher(DrawMapContext ctx, int tileSize, int threads, int bufferTiles) {
+        this(ctx, tileSize, threads, bufferTiles, DEFAULT_EXECUTOR);
+    }
+
+    /** Constructor.
+     *
+     * @param ctx the render.
+     * @param tileSize the width and height of each tile.
+     * @param threads the number of tiles to render at once; the image runner may use more threads for each.
+     * @param bufferTiles the number of finished tiles that can wait for the slowest subscriber.
+     * @param executor the executor to deliver to subscribers on.
+     */
+    public TilePublisher(DrawMapContext ctx, int tileSize, int threads, int bufferTiles, Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("illegal tileSize less than 1");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("illegal threads less than 1");
+        }
+        if (bufferTiles < threads) {
+            throw new IllegalArgumentException("illegal bufferTiles less than threads");
+        }
+        this.ctx = ctx;
+        this.tileSize = tileSize;
+        this.threads = threads;
+        this.bufferTiles = bufferTiles;
+        this.tilesAcross = (ctx.getWidth() + tileSize - 1) / tileSize;
+        this.numTiles = tilesAcross * ((ctx.getHeight() + tileSize - 1) / tileSize);
+        this.executor = executor;
+    }
+
+    /** Get the number of tiles.
+     */
+    public int getNumTiles() {
+        return numTiles;
+    }
+
+    /** Get the number of finished tiles that can wait for the slowest subscriber.
+     */
+    public int getBufferTiles() {
+        return bufferTiles;
+    }
+
+    @Override
+    public void subscribe(TileFlow.Subscriber<? super TileResult> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        Sub sub = new Sub(subscriber);
+        synchronized (this) {
+            if (started) {
+                sub.cancelled = true;
+                sub.pendingError = new IllegalStateException("subscribed after the render started");
+            }
+            else {
+                subscribers.add(sub);
+            }
+        }
+        sub.signal();
+    }
+
+    /** Start the render, for the subscribers so far.
+     *
+     * @throws IllegalStateException thrown if it's already started.
+     */
+    public void start() throws IllegalStateException {
+        synchronized (this) {
+            if (started) {
+                throw new IllegalStateException("already started");
+            }
+            started = true;
+            if (subscribers.stream().allMatch(sub -> sub.cancelled)) {
+                // no one to render for
+                stopped = true;
+                return;
+            }
+        }
+
+        AtomicInteger running = new AtomicInteger(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "tile-publisher");
+            t.setDaemon(true);
+            return t;
+        });
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                try {
+                    for (int n = takeTile(); n >= 0; n = takeTile()) {
+                        tileDone(render(n));
+                    }
+                }
+                catch (InterruptedException | CancellationException ex) {
+                    // stopped
+                }
+                catch (CompletionException ex) {
+                    fail(ex.getCause() != null ? ex.getCause() : ex);
+                }
+                catch (Throwable ex) {
+                    fail(ex);
+                }
+                finally {
+                    if (running.decrementAndGet() == 0) {
+                        pool.shutdown();
+                    }
+                }
+            });
+        }
+        drainAll();
+    }
+
+    /** Wait until the render is few enough tiles ahead of the slowest subscriber, and take the next tile to render.
+     *
+     * @return the tile number, or -1 if there are no more.
+     */
+    private synchronized int takeTile() throws InterruptedException {
+        while (!stopped && nextToRender < numTiles && nextToRender - firstBuffered >= bufferTiles) {
+            wait();
+        }
+        if (stopped || nextToRender >= numTiles) {
+            return -1;
+        }
+        return nextToRender++;
+    }
+
+    private TileResult render(int n) {
+        int x0 = (n % tilesAcross) * tileSize;
+        int y0 = (n / tilesAcross) * tileSize;
+        int w = Math.min(tileSize, ctx.getWidth() - x0);
+        int h = Math.min(tileSize, ctx.getHeight() - y0);
+        int[] counts = new int[w * h];
+        DrawMapContext tile = ctx.region(x0, y0, w, h);
+        tile.getImageRunner().run(tile, new ImageRunner.Callback() {
+            @Override
+            public void callback(double x, double y, int i, int j, int numIterations) {
+                counts[j * w + i] = numIterations;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return stopped;
+            }
+        }).join();
+        return new TileResult(x0, y0, w, h, counts);
+    }
+
+    private void tileDone(TileResult tile) {
+        synchronized (this) {
+            buffered.addLast(tile);
+            finished++;
+        }
+        drainAll();
+    }
+
+    private void fail(Throwable ex) {
+        synchronized (this) {
+            if (error == null) {
+                error = ex;
+            }
+            stopped = true;
+            notifyAll();
+        }
+        drainAll();
+    }
+
+    private void drainAll() {
+        List<Sub> subs;
+        synchronized (this) {
+            subs = new ArrayList<>(subscribers);
+        }
+        for (Sub sub : subs) {
+            sub.signal();
+        }
+    }
+
+    /** Drop the tiles that every subscriber has had, and let the render go further.
+     */
+    private synchronized void release() {
+        int min = finished;
+        boolean any = false;
+        for (Sub sub : subscribers) {
+            if (!sub.cancelled) {
+                min = Math.min(min, sub.next);
+                any = true;
+            }
+        }
+        if (!any && started) {
+            stopped = true;
+        }
+        while (firstBuffered < min) {
+            buffered.removeFirst();
+            firstBuffered++;
+        }
+        notifyAll();
+    }
+
+    private synchronized TileResult getTile(int n) {
+        // n is at least firstBuffered, since the tiles before that have been had by every subscriber
+        int k = n - firstBuffered;
+        for (TileResult tile : buffered) {
+            if (k-- == 0) {
+                return tile;
+            }
+        }
+        throw new IllegalStateException("tile " + n + " isn't buffered");
+    }
+
+    private final class Sub implements TileFlow.Subscription {
+        private final TileFlow.Subscriber<? super TileResult> subscriber;
+        private final AtomicInteger wip = new AtomicInteger();
+        // guarded by the publisher
+        private long demand = 0L;
+        private volatile boolean cancelled = false;
+        private volatile int next = 0;
+        /** An error for just this subscriber, to deliver even though it's cancelled.
+         */
+        private volatile Throwable pendingError = null;
+        // only used by the delivering task
+        private boolean subscribed = false;
+        private boolean terminated = false;
+
+        Sub(TileFlow.Subscriber<? super TileResult> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                pendingError = new IllegalArgumentException("illegal request " + n + ", must be greater than 0");
+                cancel();
+                signal();
+                return;
+            }
+            synchronized (TilePublisher.this) {
+                demand = demand + n < 0L ? Long.MAX_VALUE : demand + n;
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            release();
+        }
+
+        /** Have a task deliver what can be, unless one is already; a call while a task is delivering makes it go
+         * round again.
+         */
+        void signal() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            try {
+                executor.execute(this::drain);
+            }
+            catch (RejectedExecutionException ex) {
+                // nothing can be delivered, and wip stays up so nothing tries again
+                cancel();
+                subscriber.onError(ex);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            while (true) {
+                try {
+                    deliver();
+                }
+                catch (Throwable ex) {
+                    // the subscriber threw
+                    cancel();
+                    if (!terminated) {
+                        terminated = true;
+                        subscriber.onError(ex);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void deliver() {
+            if (!subscribed) {
+                subscribed = true;
+                subscriber.onSubscribe(this);
+            }
+            while (!terminated) {
+                Throwable err = pendingError;
+                if (err == null && cancelled) {
+                    return;
+                }
+                TileResult tile = null;
+                boolean complete = false;
+                if (err == null) {
+                    synchronized (TilePublisher.this) {
+                        err = error;
+                        complete = next >= numTiles;
+                        tile = err == null && !complete && demand > 0L && next < finished ? getTile(next) : null;
+                        if (tile != null) {
+                            demand--;
+                        }
+                    }
+                }
+                if (err != null || complete) {
+                    terminated = true;
+                    if (err != null) {
+                        subscriber.onError(err);
+                    }
+                    else {
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                if (tile == null) {
+                    return;
+                }
+                subscriber.onNext(tile);
+                next++;
+                release();
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package gsmith.chaos;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Writes a picture as a pyramid of PNG tiles at every zoom level, for web viewers.
+ * The finest level is the picture's full size; each coarser level is half the size of the one below it, rounded up,
+ * with each pixel the average color of the 2x2 pixels under it. The pyramid is built depth first, a tile at a time:
+ * each tile of a coarser level is made from its (up to) 4 tiles on the level below as soon as they're written, and
+ * then they're dropped, so only a few tiles per level per thread are ever in memory, however big the picture is.
+ * <p>
+ * The layouts are:
+ * <ul>
+ * <li>DZI (Deep Zoom): out.dzi, and out_files/level/column_row.png, from level 0 of 1x1 pixel up to the full size.
+ * Edge tiles are cut to the picture.</li>
+ * <li>XYZ: out/z/x/y.png, from zoom 0 (the whole picture in one tile) up to the full size. Edge tiles are padded to
+ * the full tile size with transparent pixels, as slippy-map viewers expect.</li>
+ * </ul>
+ */
+public class TilePyramid {
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    public static enum Layout {
+        DZI, XYZ
+    }
+
+    private final DrawMapContext ctx;
+    private final File out;
+    private final Layout layout;
+    private final int tileSize;
+    private final int maxLevel;
+    private final AtomicInteger tilesWritten = new AtomicInteger();
+
+    /** A tile's colors, in rows.
+     */
+    private static final class Tile {
+        final int width;
+        final int height;
+        final int[] rgbs;
+
+        Tile(int width, int height, int[] rgbs) {
+            this.width = width;
+            this.height = height;
+            this.rgbs = rgbs;
+        }
+    }
+
+    /** Constructor.
+     *
+     * @param ctx the picture, at the size of the finest level.
+     * @param out for DZI, the .dzi file, next to which the _files directory is written; for XYZ, the directory.
+     * @param layout the layout.
+     * @param tileSize the width and height of each tile.
+     */
+    public TilePyramid(DrawMapContext ctx, File out, Layout layout, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("illegal tileSize less than 1");
+        }
+        this.ctx = ctx;
+        this.out = out;
+        this.layout = layout;
+        this.tileSize = tileSize;
+        // DZI goes down to 1 pixel, XYZ down to 1 tile
+        int size = Math.max(ctx.getWidth(), ctx.getHeight());
+        int coarsest = layout == Layout.DZI ? 1 : tileSize;
+        int levels = 0;
+        while ((long)coarsest << levels < size) {
+            levels++;
+        }
+        this.maxLevel = levels;
+    }
+
+    /** Get the finest level.
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /** Get the width of the picture at a level.
+     */
+    public int getLevelWidth(int level) {
+        return levelSize(ctx.getWidth(), level);
+    }
+
+    /** Get the height of the picture at a level.
+     */
+    public int getLevelHeight(int level) {
+        return levelSize(ctx.getHeight(), level);
+    }
+
+    private int levelSize(int size, int level) {
+        int shift = maxLevel - level;
+        return (int)(((long)size + (1L << shift) - 1L) >> shift);
+    }
+
+    /** Get the number of tiles written so far.
+     */
+    public int getTilesWritten() {
+        return tilesWritten.get();
+    }
+
+    /** Render and write the whole pyramid.
+     *
+     * @param pool the pool to render the finest tiles and build the coarser ones on.
+     */
+    public void run(ForkJoinPool pool) throws IOException {
+        if (layout == Layout.DZI) {
+            File filesDir = getFilesDir();
+            for (int level = 0; level <= maxLevel; level++) {
+                mkdirs(new File(filesDir, Integer.toString(level)));
+            }
+            try (Writer w = Files.newBufferedWriter(out.toPath(), StandardCharsets.UTF_8)) {
+                w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                w.write("<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" TileSize=\"" + tileSize +
+                        "\" Overlap=\"0\" Format=\"png\">\n");
+                w.write("  <Size Width=\"" + ctx.getWidth() + "\" Height=\"" + ctx.getHeight() + "\"/>\n");
+                w.write("</Image>\n");
+            }
+        }
+        try {
+            pool.invoke(new TileTask(0, 0, 0));
+        }
+        catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /** Get the DZI tile directory: out_files, for out.dzi.
+     */
+    private File getFilesDir() {
+        String name = out.getName();
+        if (name.endsWith(".dzi")) {
+            name = name.substring(0, name.length() - 4);
+        }
+        return new File(out.getAbsoluteFile().getParentFile(), name + "_files");
+    }
+
+    private File tileFile(int level, int col, int row) {
+        if (layout == Layout.DZI) {
+            return new File(new File(getFilesDir(), Integer.toString(level)), col + "_" + row + ".png");
+        }
+        return new File(new File(new File(out, Integer.toString(level)), Integer.toString(col)), row + ".png");
+    }
+
+    private static void mkdirs(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("unable to create " + dir);
+        }
+    }
+
+    private final class TileTask extends RecursiveTask<Tile> {
+        private static final long serialVersionUID = 1L;
+
+        private final int level;
+        private final int col;
+        private final int row;
+
+        TileTask(int level, int col, int row) {
+            this.level = level;
+            this.col = col;
+            this.row = row;
+        }
+
+        @Override
+        protected Tile compute() {
+            int x = col * tileSize;
+            int y = row * tileSize;
+            int w = Math.min(tileSize, getLevelWidth(level) - x);
+            int h = Math.min(tileSize, getLevelHeight(level) - y);
+            try {
+                Tile tile;
+                if (level == maxLevel) {
+                    DrawMapContext region = ctx.region(x, y, w, h);
+                    IterationBuffer buffer = new IterationBuffer(region);
+                    region.getImageRunner().run(region, (cx, cy, i, j, numIterations) ->
+                            buffer.set(i, j, numIterations)).join();
+                    BufferedImage image = buffer.toImage(region);
+                    tile = new Tile(w, h, image.getRGB(0, 0, w, h, null, 0, w));
+                    // the indexed image is smaller, when it fits
+                    write(image, tile);
+                }
+                else {
+                    tile = downsample(w, h);
+                    write(null, tile);
+                }
+                return tile;
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        /** Make this tile from the up to 4 tiles under it.
+         */
+        private Tile downsample(int w, int h) {
+            int belowWidth = getLevelWidth(level + 1);
+            int belowHeight = getLevelHeight(level + 1);
+            TileTask[] children = new TileTask[4];
+            for (int k = 0; k < 4; k++) {
+                int cc = 2 * col + (k & 1);
+                int cr = 2 * row + (k >> 1);
+                if (cc * tileSize < belowWidth && cr * tileSize < belowHeight) {
+                    children[k] = new TileTask(level + 1, cc, cr);
+                }
+            }
+            // fork all but the first, and do that one here
+            for (int k = 1; k < 4; k++) {
+                if (children[k] != null) {
+                    children[k].fork();
+                }
+            }
+            Tile[] below = new Tile[4];
+            below[0] = children[0].compute();
+            for (int k = 3; k > 0; k--) {
+                if (children[k] != null) {
+                    below[k] = children[k].join();
+                }
+            }
+
+            int[] rgbs = new int[w * h];
+            for (int j = 0; j < h; j++) {
+                for (int i = 0; i < w; i++) {
+                    int r = 0;
+                    int g = 0;
+                    int b = 0;
+                    int n = 0;
+                    for (int dj = 0; dj < 2; dj++) {
+                        for (int di = 0; di < 2; di++) {
+                            // this tile's pixel (i, j) covers pixels (2i + di, 2j + dj) of the 2x2 tiles below
+                            int bi = 2 * i + di;
+                            int bj = 2 * j + dj;
+                            Tile t = below[(bi >= tileSize ? 1 : 0) + (bj >= tileSize ? 2 : 0)];
+                            bi %= tileSize;
+                            bj %= tileSize;
+                            if (t != null && bi < t.width && bj < t.height) {
+                                int rgb = t.rgbs[bj * t.width + bi];
+                                r += (rgb >> 16) & 0xff;
+                                g += (rgb >> 8) & 0xff;
+                                b += rgb & 0xff;
+                                n++;
+                            }
+                        }
+                    }
+                    rgbs[j * w + i] = 0xff000000 | (((r + n / 2) / n) << 16) | (((g + n / 2) / n) << 8) |
+                            ((b + n / 2) / n);
+                }
+            }
+            return new Tile(w, h, rgbs);
+        }
+
+        private void write(BufferedImage image, Tile tile) throws IOException {
+            BufferedImage im;
+            if (layout == Layout.XYZ && (tile.width < tileSize || tile.height < tileSize)) {
+                im = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+                im.setRGB(0, 0, tile.width, tile.height, tile.rgbs, 0, tile.width);
+            }
+            else if (image != null) {
+                im = image;
+            }
+            else {
+                im = new BufferedImage(tile.width, tile.height, BufferedImage.TYPE_INT_RGB);
+                im.setRGB(0, 0, tile.width, tile.height, tile.rgbs, 0, tile.width);
+            }
+            File f = tileFile(level, col, row);
+            if (layout == Layout.XYZ) {
+                mkdirs(f.getParentFile());
+            }
+            PaletteImages.writePNG(im, f);
+            tilesWritten.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package gsmith.chaos;
+
+/** The iteration counts for a rectangle of a render's pixels, as from {@link TilePublisher}. A tile is shared by all
+ * of the publisher's subscribers, so it's read-only.
+ */
+public final class TileResult {
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+    private final int[] counts;
+
+    TileResult(int x, int y, int width, int height, int[] counts) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.counts = counts;
+    }
+
+    /** Get the x of the tile's left pixel in the render.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /** Get the y of the tile's top pixel in the render.
+     */
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Get the iteration count of a pixel, as in {@link ImageRunner.Callback#callback}.
+     *
+     * @param i the x of the pixel in the tile.
+     * @param j the y of the pixel in the tile.
+     */
+    public int get(int i, int j) {
+        return counts[j * width + i];
+    }
+
+    /** Set the tile's pixels in a buffer of the whole render.
+     */
+    public void writeTo(IterationBuffer buffer) {
+        for (int j = 0, k = 0; j < height; j++) {
+            for (int i = 0; i < width; i++, k++) {
+                buffer.set(x + i, y + j, counts[k]);
+            }
+        }
+    }
+}
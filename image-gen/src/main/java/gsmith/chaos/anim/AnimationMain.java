@@ -0,0 +1,60 @@
+package gsmith.chaos.anim;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Properties;
+
+/** Main class for writing a keyframed animation as a numbered sequence of PNGs; see {@link Keyframes} for the
+ * properties. The optional threads property is the number of frames to render at once (default the number of
+ * processors), and writeQueue is the number of finished frames that can wait to be written (default twice that).
+ */
+public class AnimationMain {
+    public static void main(String... args) throws Exception {
+        if (args.length < 2) {
+            usage(1);
+        }
+
+        Properties p = new Properties();
+        try (InputStream in = new FileInputStream(args[0])) {
+            p.load(in);
+        }
+        Keyframes keyframes = new Keyframes(p);
+        int threads = getInt(p, "threads", Runtime.getRuntime().availableProcessors());
+        int writeQueue = getInt(p, "writeQueue", 2 * threads);
+
+        File outDir = new File(args[1]);
+        System.out.println("Writing " + keyframes.getFrames() + " frames with " + threads + " threads");
+        System.out.println("to " + outDir.getAbsolutePath());
+        long startTime = System.nanoTime();
+        AnimationRenderer renderer = new AnimationRenderer(keyframes, outDir, threads, writeQueue);
+        renderer.run();
+        long endTime = System.nanoTime();
+        System.out.println("Done in " + (endTime - startTime) / 1000000L + "ms, " + renderer.getReusedPixels() +
+                " pixels reused from previous frames");
+    }
+
+    private static int getInt(Properties p, String name, int def) {
+        String str = p.getProperty(name);
+        if (str == null) {
+            return def;
+        }
+        try {
+            int i = Integer.parseInt(str.trim());
+            if (i <= 0) {
+                throw new IllegalArgumentException("invalid '" + name + "' value " + i + ", must be greater than 0");
+            }
+            return i;
+        }
+        catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("invalid '" + name + "'", ex);
+        }
+    }
+
+    private static void usage(Integer exit) {
+        System.err.println("Usage: java " + AnimationMain.class.getName() + " animation.properties outDir");
+        if (exit != null) {
+            System.exit(exit);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package gsmith.chaos.anim;
+
+import gsmith.chaos.DrawMapContext;
+import gsmith.chaos.IterationBuffer;
+import gsmith.chaos.PaletteImages;
+import gsmith.chaos.color.ColorPalette;
+import gsmith.chaos.kernel.KernelCompiler;
+import gsmith.chaos.kernel.PixelKernel;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+/** Renders the frames of an animation to a numbered sequence of PNGs.
+ * Frames render concurrently on a shared pool, in runs: when a frame has the same equation and pixel step as the one
+ * before it, and is offset from it by a whole number of pixels (a pan, or a hold), it copies the pixels they share
+ * and only computes the new ones, so a run of such frames renders in order in one task. Finished frames go to a
+ * bounded queue for a writer thread, which holds back the renderers if PNG encoding can't keep up, so only a few
+ * frames are ever in memory. If writing a frame fails, the renderers stop at their next column.
+ */
+public class AnimationRenderer {
+    /** How close to a whole number of pixels an offset must be to reuse pixels.
+     */
+    private static final double PIXEL_EPSILON = 1e-6;
+
+    private final Keyframes keyframes;
+    private final File outDir;
+    private final int threads;
+    private final int writeQueueSize;
+    private final AtomicInteger reusedPixels = new AtomicInteger();
+
+    /** Constructor.
+     *
+     * @param keyframes the animation.
+     * @param outDir the directory to write the frames to.
+     * @param threads the number of frames to render at once.
+     * @param writeQueueSize the number of finished frames that can wait to be written.
+     */
+    public AnimationRenderer(Keyframes keyframes, File outDir, int threads, int writeQueueSize) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("illegal threads less than 1");
+        }
+        if (writeQueueSize <= 0) {
+            throw new IllegalArgumentException("illegal writeQueueSize less than 1");
+        }
+        this.keyframes = keyframes;
+        this.outDir = outDir;
+        this.threads = threads;
+        this.writeQueueSize = writeQueueSize;
+    }
+
+    /** Get the file for a frame.
+     */
+    public File getFrameFile(int frame) {
+        int digits = Math.max(5, Integer.toString(keyframes.getFrames() - 1).length());
+        return new File(outDir, String.format("frame-%0" + digits + "d.png", frame));
+    }
+
+    /** Get the number of pixels copied from previous frames, after {@link #run}.
+     */
+    public int getReusedPixels() {
+        return reusedPixels.get();
+    }
+
+    /** Render and write all the frames.
+     */
+    public void run() throws IOException, InterruptedException, ExecutionException {
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IOException("unable to create " + outDir);
+        }
+
+        // one palette for every frame, so the colors don't change from frame to frame
+        Properties[] props = new Properties[keyframes.getFrames()];
+        DrawMapContext[] contexts = new DrawMapContext[props.length];
+        ColorPalette palette = null;
+        for (int f = 0; f < props.length; f++) {
+            props[f] = keyframes.getFrame(f);
+            contexts[f] = DrawMapContext.create(props[f]);
+            if (palette == null) {
+                palette = contexts[f].getColorPalette();
+            }
+            contexts[f].setColorPalette(palette);
+        }
+
+        // split the frames into runs that can reuse pixels from the frame before
+        List<int[]> runs = new ArrayList<>();
+        int runStart = 0;
+        for (int f = 1; f <= props.length; f++) {
+            if (f == props.length || !canReuse(props[f - 1], contexts[f - 1], props[f], contexts[f])) {
+                runs.add(new int[] { runStart, f });
+                runStart = f;
+            }
+        }
+
+        BlockingQueue<Frame> queue = new ArrayBlockingQueue<>(writeQueueSize);
+        Writer writer = new Writer(queue);
+        Thread writerThread = new Thread(writer, "animation-writer");
+        writerThread.start();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int[] run : runs) {
+                futures.add(pool.submit(() -> {
+                    IterationBuffer previous = null;
+                    for (int f = run[0]; f < run[1]; f++) {
+                        IterationBuffer buffer = render(contexts[f], f > run[0] ? contexts[f - 1] : null, previous,
+                                writer);
+                        queue.put(new Frame(f, buffer.toImage(contexts[f])));
+                        previous = buffer;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                }
+                catch (ExecutionException ex) {
+                    if (writer.error == null) {
+                        throw ex;
+                    }
+                    // the renderers stopped because the writer failed, which is thrown below
+                    break;
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+            queue.put(Frame.END);
+            writerThread.join();
+        }
+        Throwable error = writer.error;
+        if (error instanceof IOException) {
+            throw (IOException)error;
+        }
+        else if (error instanceof RuntimeException) {
+            throw (RuntimeException)error;
+        }
+        else if (error instanceof Error) {
+            throw (Error)error;
+        }
+        else if (error != null) {
+            throw new IOException(error);
+        }
+    }
+
+    /** Tell if frame b can reuse frame a's pixels.
+     */
+    private static boolean canReuse(Properties pa, DrawMapContext a, Properties pb, DrawMapContext b) {
+        // everything but the viewport has to be the same
+        Properties sa = new Properties();
+        sa.putAll(pa);
+        Properties sb = new Properties();
+        sb.putAll(pb);
+        for (String name : new String[] { "start_x", "end_x", "start_y", "end_y" }) {
+            sa.remove(name);
+            sb.remove(name);
+        }
+        if (!sa.equals(sb)) {
+            return false;
+        }
+        return sameStep(a.getStepX(), b.getStepX()) && sameStep(a.getStepY(), b.getStepY()) &&
+                isWhole((b.getStartXCoord() - a.getStartXCoord()) / a.getStepX()) &&
+                isWhole((b.getStartYCoord() - a.getStartYCoord()) / a.getStepY());
+    }
+
+    private static boolean sameStep(double a, double b) {
+        return Math.abs(a - b) <= PIXEL_EPSILON * Math.abs(a);
+    }
+
+    private static boolean isWhole(double pixels) {
+        return Math.abs(pixels - Math.rint(pixels)) <= PIXEL_EPSILON;
+    }
+
+    /** Render a frame, copying what it can from the previous frame of its run.
+     *
+     * @throws CancellationException thrown if the writer has failed, so there's no point going on.
+     */
+    private IterationBuffer render(DrawMapContext ctx, DrawMapContext prevCtx, IterationBuffer prev, Writer writer)
+            throws CancellationException {
+        IterationBuffer buffer = new IterationBuffer(ctx);
+        int dx = 0;
+        int dy = 0;
+        if (prev != null) {
+            dx = (int)Math.rint((ctx.getStartXCoord() - prevCtx.getStartXCoord()) / prevCtx.getStepX());
+            dy = (int)Math.rint((ctx.getStartYCoord() - prevCtx.getStartYCoord()) / prevCtx.getStepY());
+        }
+        PixelKernel kernel = KernelCompiler.compile(ctx);
+        double[] xs = ctx.getXCoords();
+        double[] ys = ctx.getYCoords();
+        int reused = 0;
+        for (int i = 0; i < ctx.getWidth(); i++) {
+            if (writer.error != null) {
+                throw new CancellationException();
+            }
+            for (int j = 0; j < ctx.getHeight(); j++) {
+                int pi = i + dx;
+                int pj = j + dy;
+                if (prev != null && pi >= 0 && pi < prev.getWidth() && pj >= 0 && pj < prev.getHeight()) {
+                    buffer.set(i, j, prev.get(pi, pj));
+                    reused++;
+                }
+                else {
+                    buffer.set(i, j, kernel.find(xs[i], ys[j]));
+                }
+            }
+        }
+        reusedPixels.addAndGet(reused);
+        return buffer;
+    }
+
+    private static final class Frame {
+        static final Frame END = new Frame(-1, null);
+
+        final int number;
+        final BufferedImage image;
+
+        Frame(int number, BufferedImage image) {
+            this.number = number;
+            this.image = image;
+        }
+    }
+
+    private final class Writer implements Runnable {
+        private final BlockingQueue<Frame> queue;
+        volatile Throwable error = null;
+
+        Writer(BlockingQueue<Frame> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Frame frame = queue.take(); frame != Frame.END; frame = queue.take()) {
+                    // keep draining after an error, so the renderers don't block
+                    if (error == null) {
+                        try {
+                            File f = getFrameFile(frame.number);
+                            PaletteImages.writePNG(frame.image, f);
+                            System.out.println(f.getName());
+                        }
+                        catch (Throwable ex) {
+                            // ImageIO can throw runtime exceptions too; a dead writer would leave the renderers
+                            // blocked on the full queue
+                            error = ex;
+                        }
+                    }
+                }
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package gsmith.chaos.anim;
+
+import gsmith.chaos.DrawMapContext;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** The keyframes of an animation, and the interpolated render properties for each frame.
+ * The properties are the usual render properties, plus:
+ * <pre>
+ * frames=120                     -- the number of frames
+ * keyframe.0.frame=0             -- the frame number for keyframe 0
+ * keyframe.0.start_x=-2.0        -- any viewport or coeff.N.real/imag values for keyframe 0
+ * keyframe.1.frame=119
+ * keyframe.1.start_x=-0.01
+ * ...
+ * </pre>
+ * Keyframe values that aren't given come from the base properties. Between keyframes, coefficients are interpolated
+ * linearly, and the viewport's width and height are interpolated geometrically, so that a zoom runs at a constant
+ * rate, with the center moving so that the point the zoom closes in on stays at the same place in the frame. Frames
+ * before the first keyframe or after the last one hold that keyframe's values.
+ */
+public final class Keyframes {
+    private static final String KEYFRAME_PREFIX = "keyframe.";
+    private static final String[] VIEWPORT = { "start_x", "end_x", "start_y", "end_y" };
+
+    private final int frames;
+    private final Properties base;
+    /** The keyframes' full properties, by frame number.
+     */
+    private final TreeMap<Integer, Properties> keyframes = new TreeMap<>();
+    /** The coefficient properties that change between keyframes.
+     */
+    private final TreeSet<String> coefficients = new TreeSet<>();
+
+    /** Parse the keyframes from the animation properties.
+     *
+     * @throws IllegalArgumentException thrown if the properties are invalid.
+     */
+    public Keyframes(Properties p) throws IllegalArgumentException {
+        this.frames = parseInt(p, "frames");
+        if (frames <= 0) {
+            throw new IllegalArgumentException("invalid 'frames' value " + frames + ", must be greater than 0");
+        }
+
+        // split the keyframe properties from the base ones
+        this.base = new Properties();
+        Map<Integer, Properties> byIndex = new TreeMap<>();
+        p.forEach((key, value) -> {
+            String name = key.toString();
+            if (name.startsWith(KEYFRAME_PREFIX)) {
+                int dot = name.indexOf('.', KEYFRAME_PREFIX.length());
+                if (dot < 0) {
+                    throw new IllegalArgumentException("invalid keyframe property '" + name + "'");
+                }
+                int index;
+                try {
+                    index = Integer.parseInt(name.substring(KEYFRAME_PREFIX.length(), dot));
+                }
+                catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("invalid keyframe property '" + name + "'", ex);
+                }
+                byIndex.computeIfAbsent(index, i -> new Properties()).setProperty(name.substring(dot + 1),
+                        value.toString());
+            }
+            else if (!name.equals("frames") && !name.equals("threads") && !name.equals("writeQueue")) {
+                base.setProperty(name, value.toString());
+            }
+        });
+        if (byIndex.isEmpty()) {
+            throw new IllegalArgumentException("missing 'keyframe.0.frame'");
+        }
+
+        for (Map.Entry<Integer, Properties> e : byIndex.entrySet()) {
+            Properties kp = e.getValue();
+            int frame = parseInt(kp, "frame");
+            kp.remove("frame");
+            kp.forEach((key, value) -> {
+                String name = key.toString();
+                if (name.startsWith("coeff.")) {
+                    coefficients.add(name);
+                }
+                else if (!isViewport(name)) {
+                    throw new IllegalArgumentException("invalid keyframe property '" + KEYFRAME_PREFIX + e.getKey() +
+                            "." + name + "', only the viewport and coefficients can be animated");
+                }
+            });
+            Properties full = new Properties();
+            full.putAll(base);
+            full.putAll(kp);
+            if (keyframes.put(frame, full) != null) {
+                throw new IllegalArgumentException("duplicate keyframes for frame " + frame);
+            }
+        }
+    }
+
+    private static boolean isViewport(String name) {
+        for (String v : VIEWPORT) {
+            if (v.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Get the number of frames.
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    /** Get the render properties for a frame.
+     */
+    public Properties getFrame(int frame) {
+        Map.Entry<Integer, Properties> before = keyframes.floorEntry(frame);
+        Map.Entry<Integer, Properties> after = keyframes.ceilingEntry(frame);
+        if (before == null) {
+            return copy(after.getValue());
+        }
+        if (after == null || before.getKey().equals(after.getKey())) {
+            return copy(before.getValue());
+        }
+        double t = (double)(frame - before.getKey()) / (after.getKey() - before.getKey());
+        Properties a = before.getValue();
+        Properties b = after.getValue();
+        Properties p = copy(a);
+
+        for (String name : coefficients) {
+            double va = getDouble(a, name, 0.0);
+            double vb = getDouble(b, name, 0.0);
+            p.setProperty(name, Double.toString(va + (vb - va) * t));
+        }
+
+        interpolateAxis(p, a, b, t, "start_x", "end_x");
+        interpolateAxis(p, a, b, t, "start_y", "end_y");
+        return p;
+    }
+
+    private static void interpolateAxis(Properties p, Properties a, Properties b, double t, String startName,
+            String endName) {
+        double startA = getDouble(a, startName, DrawMapContext.DEFAULT_START_COORD);
+        double endA = getDouble(a, endName, DrawMapContext.DEFAULT_END_COORD);
+        double startB = getDouble(b, startName, DrawMapContext.DEFAULT_START_COORD);
+        double endB = getDouble(b, endName, DrawMapContext.DEFAULT_END_COORD);
+        if (startA == startB && endA == endB) {
+            return;
+        }
+        double centerA = (startA + endA) / 2.0;
+        double centerB = (startB + endB) / 2.0;
+        double spanA = endA - startA;
+        double spanB = endB - startB;
+        // geometric, so each frame zooms by the same factor; that only works when the spans have the same sign
+        double span = spanA * spanB > 0.0 ? spanA * Math.pow(spanB / spanA, t) : spanA + (spanB - spanA) * t;
+        // a zoom keeps its fixed point (the point at the same place in both views) where it is, so the center moves
+        // in step with the span; a linear center would run ahead of a geometric span and lose an off-center target
+        double center = spanA != spanB ? centerB + (centerA - centerB) * (span - spanB) / (spanA - spanB) :
+                centerA + (centerB - centerA) * t;
+        p.setProperty(startName, Double.toString(center - span / 2.0));
+        p.setProperty(endName, Double.toString(center + span / 2.0));
+    }
+
+    private static Properties copy(Properties p) {
+        Properties copy = new Properties();
+        copy.putAll(p);
+        return copy;
+    }
+
+    private static double getDouble(Properties p, String name, double def) {
+        String str = p.getProperty(name);
+        if (str == null) {
+            return def;
+        }
+        try {
+            return Double.parseDouble(str.trim());
+        }
+        catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("invalid '" + name + "'", ex);
+        }
+    }
+
+    private static int parseInt(Properties p, String name) {
+        String str = p.getProperty(name);
+        if (str == null) {
+            throw new IllegalArgumentException("missing '" + name + "'");
+        }
+        try {
+            return Integer.parseInt(str.trim());
+        }
+        catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("invalid '" + name + "'", ex);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package gsmith.chaos.kernel;
+
+import gsmith.math.ExpressionEquation;
+
+/** Newton's method on an expression equation, running its compiled program over primitives with the Newton step
+ * inlined.
+ */
+final class ExpressionNewtonKernel implements PixelKernel {
+    private final ExpressionEquation equation;
+    private final double toleranceSquared;
+    private final int maxIterations;
+    // each thread needs its own registers and output
+    private final ThreadLocal<double[][]> scratch;
+
+    ExpressionNewtonKernel(ExpressionEquation equation, double tolerance, int maxIterations) {
+        this.equation = equation;
+        this.toleranceSquared = tolerance * tolerance;
+        this.maxIterations = maxIterations;
+        this.scratch = ThreadLocal.withInitial(() -> new double[][] { equation.newRegisters(), new double[4] });
+    }
+
+    @Override
+    public int find(double pRe, double pIm) {
+        double[][] s = scratch.get();
+        double[] registers = s[0];
+        double[] out = s[1];
+        for (int i = 1; i <= maxIterations; i++) {
+            equation.evaluate(pRe, pIm, registers, out);
+            double fRe = out[0];
+            double fIm = out[1];
+            double zRe = out[2];
+            double zIm = out[3];
+            if (zRe == 0.0 && zIm == 0.0) {
+                return -1;
+            }
+            // step = f / f', using Smith's algorithm
+            double sRe;
+            double sIm;
+            if (Math.abs(zRe) >= Math.abs(zIm)) {
+                double r = zIm / zRe;
+                double denom = zRe + zIm * r;
+                sRe = (fRe + fIm * r) / denom;
+                sIm = (fIm - fRe * r) / denom;
+            }
+            else {
+                double r = zRe / zIm;
+                double denom = zRe * r + zIm;
+                sRe = (fRe * r + fIm) / denom;
+                sIm = (fIm * r - fRe) / denom;
+            }
+            double nextRe = pRe - sRe;
+            double nextIm = pIm - sIm;
+            double dRe = nextRe - pRe;
+            double dIm = nextIm - pIm;
+            if (dRe * dRe + dIm * dIm < toleranceSquared) {
+                return i;
+            }
+            pRe = nextRe;
+            pIm = nextIm;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,34 @@
+package gsmith.chaos.kernel;
+
+import gsmith.math.Complex;
+import gsmith.math.ComplexEquation;
+import gsmith.math.ComplexRootFinder;
+
+/** A kernel that just calls the root finder, for combinations that don't have a specialized kernel.
+ */
+final class GenericKernel implements PixelKernel {
+    private static final Complex EPSILON = new Complex(0.1, 0.0);
+    private static final Complex EPSILON2 = new Complex(0.2, 0.0);
+
+    private final ComplexEquation equation;
+    private final ComplexRootFinder rootFinder;
+    private final double tolerance;
+    private final int maxIterations;
+
+    GenericKernel(ComplexEquation equation, ComplexRootFinder rootFinder, double tolerance, int maxIterations) {
+        this.equation = equation;
+        this.rootFinder = rootFinder;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    @Override
+    public int find(double x, double y) {
+        Complex approx = new Complex(x, y);
+        Complex[] rootHolder = new Complex[] {
+            null
+        };
+        return rootFinder.find(approx, approx.sub(EPSILON), approx.sub(EPSILON2), tolerance, maxIterations, equation,
+                rootHolder);
+    }
+}
@@ -0,0 +1,85 @@
+package gsmith.chaos.kernel;
+
+import gsmith.chaos.DrawMapContext;
+import gsmith.math.Complex;
+import gsmith.math.ComplexEquation;
+import gsmith.math.ComplexPolynomial;
+import gsmith.math.ComplexRootFinder;
+import gsmith.math.ExpressionEquation;
+import gsmith.math.NewtonsMethod;
+import gsmith.math.SparseComplexPolynomial;
+import gsmith.math.SurrogateEquation;
+
+/** Picks a specialized, allocation-free {@link PixelKernel} for the equation and root finder of a render.
+ * The equation, root finder, tolerance and maximum number of iterations are all fixed for a whole render, so doing
+ * this once at the start means each pixel goes through one monomorphic call into a straight-line loop over
+ * primitives, instead of the ComplexEquation and ComplexRootFinder interface calls and a Complex allocation per
+ * arithmetic operation. Combinations without a specialized kernel fall back to calling the root finder.
+ */
+public final class KernelCompiler {
+    private KernelCompiler() {
+    }
+
+    /** Get the kernel for the context's equation (or its surrogate), root finder, tolerance and maximum number of
+     * iterations.
+     */
+    public static PixelKernel compile(DrawMapContext ctx) {
+        return compile(ctx.getRenderEquation(), ctx.getRootFinder(), ctx.getTolerance(), ctx.getMaxIterations());
+    }
+
+    /** Get the kernel for the equation, root finder, tolerance and maximum number of iterations.
+     */
+    public static PixelKernel compile(ComplexEquation equation, ComplexRootFinder rootFinder, double tolerance,
+            int maxIterations) {
+        // only exactly NewtonsMethod, since a subclass could change what it does
+        if (rootFinder.getClass() == NewtonsMethod.class) {
+            if (equation instanceof ComplexPolynomial) {
+                return compileNewton((ComplexPolynomial)equation, tolerance, maxIterations);
+            }
+            else if (equation instanceof SparseComplexPolynomial) {
+                return compileNewton((SparseComplexPolynomial)equation, tolerance, maxIterations);
+            }
+            else if (equation instanceof ExpressionEquation) {
+                return new ExpressionNewtonKernel((ExpressionEquation)equation, tolerance, maxIterations);
+            }
+            else if (equation instanceof SurrogateEquation) {
+                return new SurrogateNewtonKernel((SurrogateEquation)equation, tolerance, maxIterations);
+            }
+        }
+        return new GenericKernel(equation, rootFinder, tolerance, maxIterations);
+    }
+
+    private static PixelKernel compileNewton(ComplexPolynomial eq, double tolerance, int maxIterations) {
+        int n = eq.getOrder();
+        double[] aRe = new double[n + 1];
+        double[] aIm = new double[n + 1];
+        boolean real = true;
+        for (int i = 0; i <= n; i++) {
+            Complex c = eq.a(i);
+            // ComplexPolynomial doesn't handle null coefficients in f(), so leave those to the generic kernel
+            if (c == null) {
+                return new GenericKernel(eq, new NewtonsMethod(), tolerance, maxIterations);
+            }
+            aRe[i] = c.re;
+            aIm[i] = c.im;
+            real &= c.im == 0.0;
+        }
+        if (real) {
+            return new RealPolynomialNewtonKernel(aRe, tolerance, maxIterations);
+        }
+        return new PolynomialNewtonKernel(aRe, aIm, tolerance, maxIterations);
+    }
+
+    private static PixelKernel compileNewton(SparseComplexPolynomial eq, double tolerance, int maxIterations) {
+        int count = eq.getNumTerms();
+        int[] powers = new int[count];
+        double[] cRe = new double[count];
+        double[] cIm = new double[count];
+        for (int t = 0; t < count; t++) {
+            powers[t] = eq.power(t);
+            cRe[t] = eq.coeff(t).re;
+            cIm[t] = eq.coeff(t).im;
+        }
+        return new SparsePolynomialNewtonKernel(powers, cRe, cIm, tolerance, maxIterations);
+    }
+}
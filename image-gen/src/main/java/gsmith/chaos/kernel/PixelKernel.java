@@ -0,0 +1,17 @@
+package gsmith.chaos.kernel;
+
+/** A compiled root-finding kernel for one render, with the equation, root finder, tolerance and maximum number of
+ * iterations fixed.
+ * Use {@link KernelCompiler#compile(gsmith.chaos.DrawMapContext)} to get one.
+ */
+@FunctionalInterface
+public interface PixelKernel {
+    /** Find the root starting at the specified coordinates.
+     *
+     * @param x the real x coordinate.
+     * @param y the real y coordinate.
+     * @return the number of iterations required to calculate the root, less than 0 for cannot be found, 0 for
+     *         exceeded maxIterations, as in {@link gsmith.math.ComplexRootFinder#find}.
+     */
+    int find(double x, double y);
+}
@@ -0,0 +1,71 @@
+package gsmith.chaos.kernel;
+
+/** Newton's method on a dense polynomial with complex coefficients, with Horner's method and the Newton step inlined
+ * over primitives. This does the same arithmetic in the same order as
+ * {@link gsmith.math.NewtonsMethod} with {@link gsmith.math.ComplexPolynomial}, without allocating.
+ */
+final class PolynomialNewtonKernel implements PixelKernel {
+    private final double[] aRe;
+    private final double[] aIm;
+    private final double toleranceSquared;
+    private final int maxIterations;
+
+    PolynomialNewtonKernel(double[] aRe, double[] aIm, double tolerance, int maxIterations) {
+        this.aRe = aRe;
+        this.aIm = aIm;
+        this.toleranceSquared = tolerance * tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    @Override
+    public int find(double pRe, double pIm) {
+        final double[] aRe = this.aRe;
+        final double[] aIm = this.aIm;
+        final int n = aRe.length - 1;
+        for (int i = 1; i <= maxIterations; i++) {
+            // y = f(p), z = f'(p)
+            double yRe = aRe[n];
+            double yIm = aIm[n];
+            double zRe = yRe;
+            double zIm = yIm;
+            for (int j = n - 1; j >= 1; j--) {
+                double t = pRe * yRe - pIm * yIm + aRe[j];
+                yIm = pRe * yIm + pIm * yRe + aIm[j];
+                yRe = t;
+                t = pRe * zRe - pIm * zIm + yRe;
+                zIm = pRe * zIm + pIm * zRe + yIm;
+                zRe = t;
+            }
+            double fRe = pRe * yRe - pIm * yIm + aRe[0];
+            double fIm = pRe * yIm + pIm * yRe + aIm[0];
+            if (zRe == 0.0 && zIm == 0.0) {
+                return -1;
+            }
+            // step = f / f', using Smith's algorithm
+            double sRe;
+            double sIm;
+            if (Math.abs(zRe) >= Math.abs(zIm)) {
+                double r = zIm / zRe;
+                double denom = zRe + zIm * r;
+                sRe = (fRe + fIm * r) / denom;
+                sIm = (fIm - fRe * r) / denom;
+            }
+            else {
+                double r = zRe / zIm;
+                double denom = zRe * r + zIm;
+                sRe = (fRe * r + fIm) / denom;
+                sIm = (fIm * r - fRe) / denom;
+            }
+            double nextRe = pRe - sRe;
+            double nextIm = pIm - sIm;
+            double dRe = nextRe - pRe;
+            double dIm = nextIm - pIm;
+            if (dRe * dRe + dIm * dIm < toleranceSquared) {
+                return i;
+            }
+            pRe = nextRe;
+            pIm = nextIm;
+        }
+        return 0;
+    }
+}
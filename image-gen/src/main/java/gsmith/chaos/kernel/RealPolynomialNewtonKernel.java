@@ -0,0 +1,68 @@
+package gsmith.chaos.kernel;
+
+/** Newton's method on a dense polynomial with only real coefficients, with Horner's method and the Newton step
+ * inlined over primitives. This is {@link PolynomialNewtonKernel} with the imaginary parts of the coefficients
+ * folded away.
+ */
+final class RealPolynomialNewtonKernel implements PixelKernel {
+    private final double[] a;
+    private final double toleranceSquared;
+    private final int maxIterations;
+
+    RealPolynomialNewtonKernel(double[] a, double tolerance, int maxIterations) {
+        this.a = a;
+        this.toleranceSquared = tolerance * tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    @Override
+    public int find(double pRe, double pIm) {
+        final double[] a = this.a;
+        final int n = a.length - 1;
+        for (int i = 1; i <= maxIterations; i++) {
+            // y = f(p), z = f'(p)
+            double yRe = a[n];
+            double yIm = 0.0;
+            double zRe = yRe;
+            double zIm = 0.0;
+            for (int j = n - 1; j >= 1; j--) {
+                double t = pRe * yRe - pIm * yIm + a[j];
+                yIm = pRe * yIm + pIm * yRe;
+                yRe = t;
+                t = pRe * zRe - pIm * zIm + yRe;
+                zIm = pRe * zIm + pIm * zRe + yIm;
+                zRe = t;
+            }
+            double fRe = pRe * yRe - pIm * yIm + a[0];
+            double fIm = pRe * yIm + pIm * yRe;
+            if (zRe == 0.0 && zIm == 0.0) {
+                return -1;
+            }
+            // step = f / f', using Smith's algorithm
+            double sRe;
+            double sIm;
+            if (Math.abs(zRe) >= Math.abs(zIm)) {
+                double r = zIm / zRe;
+                double denom = zRe + zIm * r;
+                sRe = (fRe + fIm * r) / denom;
+                sIm = (fIm - fRe * r) / denom;
+            }
+            else {
+                double r = zRe / zIm;
+                double denom = zRe * r + zIm;
+                sRe = (fRe * r + fIm) / denom;
+                sIm = (fIm * r - fRe) / denom;
+            }
+            double nextRe = pRe - sRe;
+            double nextIm = pIm - sIm;
+            double dRe = nextRe - pRe;
+            double dIm = nextIm - pIm;
+            if (dRe * dRe + dIm * dIm < toleranceSquared) {
+                return i;
+            }
+            pRe = nextRe;
+            pIm = nextIm;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,94 @@
+package gsmith.chaos.kernel;
+
+/** Newton's method on a sparse polynomial, evaluating each nonzero term with exponentiation by squaring over
+ * primitives, with the Newton step inlined.
+ */
+final class SparsePolynomialNewtonKernel implements PixelKernel {
+    private final int[] powers;
+    private final double[] cRe;
+    private final double[] cIm;
+    private final double toleranceSquared;
+    private final int maxIterations;
+
+    SparsePolynomialNewtonKernel(int[] powers, double[] cRe, double[] cIm, double tolerance, int maxIterations) {
+        this.powers = powers;
+        this.cRe = cRe;
+        this.cIm = cIm;
+        this.toleranceSquared = tolerance * tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    @Override
+    public int find(double pRe, double pIm) {
+        final int[] powers = this.powers;
+        final double[] cRe = this.cRe;
+        final double[] cIm = this.cIm;
+        for (int i = 1; i <= maxIterations; i++) {
+            double fRe = 0.0;
+            double fIm = 0.0;
+            double zRe = 0.0;
+            double zIm = 0.0;
+            for (int t = 0; t < powers.length; t++) {
+                int k = powers[t];
+                if (k == 0) {
+                    fRe += cRe[t];
+                    fIm += cIm[t];
+                    continue;
+                }
+                // x^(k - 1) by squaring
+                double xRe = 1.0;
+                double xIm = 0.0;
+                double bRe = pRe;
+                double bIm = pIm;
+                for (int e = k - 1; e > 0; e >>>= 1) {
+                    if ((e & 1) != 0) {
+                        double tmp = xRe * bRe - xIm * bIm;
+                        xIm = xRe * bIm + xIm * bRe;
+                        xRe = tmp;
+                    }
+                    if (e > 1) {
+                        double tmp = bRe * bRe - bIm * bIm;
+                        bIm = 2.0 * bRe * bIm;
+                        bRe = tmp;
+                    }
+                }
+                // c * x^(k - 1)
+                double cxRe = cRe[t] * xRe - cIm[t] * xIm;
+                double cxIm = cRe[t] * xIm + cIm[t] * xRe;
+                // f' += k * c * x^(k - 1), f += c * x^(k - 1) * x
+                zRe += k * cxRe;
+                zIm += k * cxIm;
+                fRe += cxRe * pRe - cxIm * pIm;
+                fIm += cxRe * pIm + cxIm * pRe;
+            }
+            if (zRe == 0.0 && zIm == 0.0) {
+                return -1;
+            }
+            // step = f / f', using Smith's algorithm
+            double sRe;
+            double sIm;
+            if (Math.abs(zRe) >= Math.abs(zIm)) {
+                double r = zIm / zRe;
+                double denom = zRe + zIm * r;
+                sRe = (fRe + fIm * r) / denom;
+                sIm = (fIm - fRe * r) / denom;
+            }
+            else {
+                double r = zRe / zIm;
+                double denom = zRe * r + zIm;
+                sRe = (fRe * r + fIm) / denom;
+                sIm = (fIm * r - fRe) / denom;
+            }
+            double nextRe = pRe - sRe;
+            double nextIm = pIm - sIm;
+            double dRe = nextRe - pRe;
+            double dIm = nextIm - pIm;
+            if (dRe * dRe + dIm * dIm < toleranceSquared) {
+                return i;
+            }
+            pRe = nextRe;
+            pIm = nextIm;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,87 @@
+package gsmith.chaos.kernel;
+
+import gsmith.math.Complex;
+import gsmith.math.ComplexEquation;
+import gsmith.math.ExpressionEquation;
+import gsmith.math.SurrogateEquation;
+
+/** Newton's method on a surrogate, over primitives: the cells' expansions where they can be used, and otherwise the
+ * exact equation, through its compiled program if it's an expression.
+ */
+final class SurrogateNewtonKernel implements PixelKernel {
+    private final SurrogateEquation surrogate;
+    private final ComplexEquation exact;
+    private final ExpressionEquation expression;
+    private final double toleranceSquared;
+    private final int maxIterations;
+    // each thread needs its own registers and output
+    private final ThreadLocal<double[][]> scratch;
+
+    SurrogateNewtonKernel(SurrogateEquation surrogate, double tolerance, int maxIterations) {
+        this.surrogate = surrogate;
+        this.exact = surrogate.getExact();
+        this.expression = exact instanceof ExpressionEquation ? (ExpressionEquation)exact : null;
+        this.toleranceSquared = tolerance * tolerance;
+        this.maxIterations = maxIterations;
+        this.scratch = ThreadLocal.withInitial(() -> new double[][] {
+            expression != null ? expression.newRegisters() : null, new double[4]
+        });
+    }
+
+    @Override
+    public int find(double pRe, double pIm) {
+        double[][] s = scratch.get();
+        double[] registers = s[0];
+        double[] out = s[1];
+        Complex[] deriv = expression == null ? new Complex[1] : null;
+        for (int i = 1; i <= maxIterations; i++) {
+            if (!surrogate.approximate(pRe, pIm, out)) {
+                if (expression != null) {
+                    expression.evaluate(pRe, pIm, registers, out);
+                }
+                else {
+                    Complex y = exact.f(new Complex(pRe, pIm), deriv);
+                    if (y == null || deriv[0] == null) {
+                        return -1;
+                    }
+                    out[0] = y.re;
+                    out[1] = y.im;
+                    out[2] = deriv[0].re;
+                    out[3] = deriv[0].im;
+                }
+            }
+            double fRe = out[0];
+            double fIm = out[1];
+            double zRe = out[2];
+            double zIm = out[3];
+            if (zRe == 0.0 && zIm == 0.0) {
+                return -1;
+            }
+            // step = f / f', using Smith's algorithm
+            double sRe;
+            double sIm;
+            if (Math.abs(zRe) >= Math.abs(zIm)) {
+                double r = zIm / zRe;
+                double denom = zRe + zIm * r;
+                sRe = (fRe + fIm * r) / denom;
+                sIm = (fIm - fRe * r) / denom;
+            }
+            else {
+                double r = zRe / zIm;
+                double denom = zRe * r + zIm;
+                sRe = (fRe * r + fIm) / denom;
+                sIm = (fIm * r - fRe) / denom;
+            }
+            double nextRe = pRe - sRe;
+            double nextIm = pIm - sIm;
+            double dRe = nextRe - pRe;
+            double dIm = nextIm - pIm;
+            if (dRe * dRe + dIm * dIm < toleranceSquared) {
+                return i;
+            }
+            pRe = nextRe;
+            pIm = nextIm;
+        }
+        return 0;
+    }
+}
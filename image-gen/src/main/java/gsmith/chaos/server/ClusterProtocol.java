@@ -0,0 +1,110 @@
+package gsmith.chaos.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** The wire format between {@link RenderCoordinator} and {@link RenderWorker}, written with DataOutputStream. A
+ * worker connects to the coordinator and they send:
+ * <pre>
+ * worker:      int MAGIC, int threads
+ * coordinator: JOB, int length, the .properties file's bytes
+ * coordinator: TILE, int id, int x, int y, int width, int height   -- any number of times
+ * worker:      RESULT, int id, int length, deflated big-endian ints -- for each TILE, in any order
+ *          or: FAILED, int id, UTF error                            -- for a TILE it couldn't render
+ * coordinator: DONE
+ * </pre>
+ * The iteration counts of a tile are in rows, width * height of them.
+ * <p>
+ * There's no authentication, so the coordinator listens on the loopback address unless it's told otherwise, which
+ * should only be on a trusted network.
+ */
+final class ClusterProtocol {
+    static final int MAGIC = 0x434c5354; // CLST
+    static final int JOB = 1;
+    static final int TILE = 2;
+    static final int RESULT = 3;
+    static final int DONE = 4;
+    static final int FAILED = 5;
+    static final int DEFAULT_PORT = 7374;
+    /** The largest message body accepted.
+     */
+    static final int MAX_LENGTH = 1 << 28;
+
+    private ClusterProtocol() {
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("invalid message length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static byte[] deflate(int[] counts) {
+        byte[] raw = new byte[counts.length * 4];
+        for (int k = 0, b = 0; k < counts.length; k++) {
+            int v = counts[k];
+            raw[b++] = (byte)(v >>> 24);
+            raw[b++] = (byte)(v >>> 16);
+            raw[b++] = (byte)(v >>> 8);
+            raw[b++] = (byte)v;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    static int[] inflate(byte[] bytes, int numCounts) throws IOException {
+        byte[] raw = new byte[numCounts * 4];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                int got = inflater.inflate(raw, n, raw.length - n);
+                if (got == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += got;
+            }
+            if (n != raw.length) {
+                throw new IOException("truncated tile, " + n + " of " + raw.length + " bytes");
+            }
+        }
+        catch (DataFormatException ex) {
+            throw new IOException("corrupt tile", ex);
+        }
+        finally {
+            inflater.end();
+        }
+        int[] counts = new int[numCounts];
+        for (int k = 0, b = 0; k < numCounts; k++, b += 4) {
+            counts[k] = (raw[b] << 24) | ((raw[b + 1] & 0xff) << 16) | ((raw[b + 2] & 0xff) << 8) | (raw[b + 3] & 0xff);
+        }
+        return counts;
+    }
+}
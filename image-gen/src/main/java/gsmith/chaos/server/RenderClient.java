@@ -0,0 +1,107 @@
+package gsmith.chaos.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+
+/** Main class for asking a {@link RenderDaemon} to write images. This only sends the files over, so it starts fast;
+ * it doesn't load any of the rendering code.
+ */
+public class RenderClient {
+    public static void main(String... args) throws Exception {
+        int port = RenderProtocol.DEFAULT_PORT;
+        boolean stop = false;
+        File tokenFile = RenderProtocol.getDefaultTokenFile();
+        int argi = 0;
+        try {
+            for (; argi < args.length && args[argi].startsWith("--"); argi++) {
+                if ("--port".equals(args[argi]) && argi + 1 < args.length) {
+                    port = Integer.parseInt(args[++argi]);
+                }
+                else if ("--token-file".equals(args[argi]) && argi + 1 < args.length) {
+                    tokenFile = new File(args[++argi]);
+                }
+                else if ("--stop".equals(args[argi])) {
+                    stop = true;
+                }
+                else {
+                    usage(1);
+                }
+            }
+        }
+        catch (NumberFormatException ex) {
+            usage(1);
+        }
+        if (stop ? argi != args.length : (args.length - argi == 0 || (args.length - argi) % 2 != 0)) {
+            usage(1);
+        }
+
+        String token;
+        try {
+            token = RenderProtocol.readToken(tokenFile);
+        }
+        catch (IOException ex) {
+            System.err.println("Unable to read the daemon's token from " + tokenFile + ": " + ex);
+            System.exit(1);
+            return;
+        }
+        if (stop) {
+            System.exit(request(port, token, RenderProtocol.STOP, null, null) ? 0 : 1);
+        }
+        boolean ok = true;
+        for (; argi < args.length; argi += 2) {
+            ok &= request(port, token, RenderProtocol.RENDER, new File(args[argi]), new File(args[argi + 1]));
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static boolean request(int port, String token, int op, File props, File out) throws IOException {
+        long startTime = System.nanoTime();
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port);
+                DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                DataInputStream din = new DataInputStream(new BufferedInputStream(s.getInputStream()))) {
+            dout.writeInt(RenderProtocol.MAGIC);
+            dout.writeUTF(token);
+            dout.writeInt(op);
+            if (op == RenderProtocol.RENDER) {
+                byte[] bytes = Files.readAllBytes(props.toPath());
+                // the daemon has its own working directory
+                dout.writeUTF(out.getAbsolutePath());
+                dout.writeInt(bytes.length);
+                dout.write(bytes);
+            }
+            dout.flush();
+
+            boolean ok = din.readBoolean();
+            String message = din.readUTF();
+            long renderMs = din.readLong();
+            boolean shared = din.readBoolean();
+            long ms = (System.nanoTime() - startTime) / 1000000L;
+            if (!ok) {
+                System.err.println((props != null ? props + ": " : "") + message);
+            }
+            else if (op == RenderProtocol.RENDER) {
+                System.out.println(message + " in " + ms + "ms (render " + renderMs + "ms" +
+                        (shared ? ", shared with another request)" : ")"));
+            }
+            else {
+                System.out.println(message);
+            }
+            return ok;
+        }
+    }
+
+    private static void usage(Integer exit) {
+        System.err.println("Usage: java " + RenderClient.class.getName() +
+                " [--port n] [--token-file file] (.properties out.png)... | [--port n] [--token-file file] --stop");
+        if (exit != null) {
+            System.exit(exit);
+        }
+    }
+}
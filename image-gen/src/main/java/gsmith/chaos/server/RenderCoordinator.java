@@ -0,0 +1,412 @@
+package gsmith.chaos.server;
+
+import gsmith.chaos.DrawMapContext;
+import gsmith.chaos.IterationBuffer;
+import gsmith.chaos.PaletteImages;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/** Renders a picture across {@link RenderWorker} processes. The picture is split into tiles, which workers are sent
+ * as they connect and as they finish tiles, a few at a time so they're never idle waiting for the next one. When
+ * there are no tiles left to hand out, an idle worker is also sent one of the tiles still being rendered elsewhere,
+ * so a slow or hung worker can't hold up the end of a job; the first result for a tile wins. When a worker's
+ * connection is lost, its tiles go back to the front of the queue, and so does a tile a worker fails to render, up
+ * to {@link #MAX_RETRIES} times each.
+ * <p>
+ * Workers aren't authenticated, so by default it only listens on the loopback address; --bind opens it up to a
+ * trusted network.
+ */
+public class RenderCoordinator {
+    /** The default width and height of each tile.
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+    /** The number of times a tile can be lost with a worker, or fail, before the job fails.
+     */
+    public static final int MAX_RETRIES = 3;
+
+    private final DrawMapContext ctx;
+    private final byte[] propertyBytes;
+    private final ServerSocket serverSocket;
+    private final IterationBuffer buffer;
+
+    // the tiles, as x, y, width, height; everything else is guarded by this
+    private final int[][] tiles;
+    private final boolean[] done;
+    private final int[] retries;
+    private final ArrayDeque<Integer> pending = new ArrayDeque<>();
+    private final List<Worker> workers = new ArrayList<>();
+    private int remaining;
+    private IOException failure = null;
+
+    private static final class Worker {
+        final Socket socket;
+        final DataOutputStream out;
+        final int window;
+        final Set<Integer> assigned = new HashSet<>();
+
+        Worker(Socket socket, DataOutputStream out, int threads) {
+            this.socket = socket;
+            this.out = out;
+            // enough that the worker has its next tiles while it sends results
+            this.window = 2 * threads;
+        }
+    }
+
+    /** Constructor.
+     *
+     * @param p the properties to render.
+     * @param address the address to listen for workers on.
+     * @param tileSize the width and height of each tile.
+     * @throws IllegalArgumentException thrown if the properties are invalid.
+     */
+    public RenderCoordinator(Properties p, InetSocketAddress address, int tileSize) throws IOException,
+            IllegalArgumentException {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("illegal tileSize less than 1");
+        }
+        this.ctx = DrawMapContext.create(p);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        p.store(bytes, null);
+        this.propertyBytes = bytes.toByteArray();
+        this.buffer = new IterationBuffer(ctx);
+
+        int across = (ctx.getWidth() + tileSize - 1) / tileSize;
+        int down = (ctx.getHeight() + tileSize - 1) / tileSize;
+        this.tiles = new int[across * down][];
+        for (int ty = 0, id = 0; ty < down; ty++) {
+            for (int tx = 0; tx < across; tx++, id++) {
+                int x = tx * tileSize;
+                int y = ty * tileSize;
+                tiles[id] = new int[] { x, y, Math.min(tileSize, ctx.getWidth() - x),
+                        Math.min(tileSize, ctx.getHeight() - y) };
+                pending.add(id);
+            }
+        }
+        this.done = new boolean[tiles.length];
+        this.retries = new int[tiles.length];
+        this.remaining = tiles.length;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(address, 50);
+    }
+
+    /** Get the context being rendered.
+     */
+    public DrawMapContext getContext() {
+        return ctx;
+    }
+
+    /** Get the address being listened on.
+     */
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress)serverSocket.getLocalSocketAddress();
+    }
+
+    /** Hand out the tiles to the workers that connect, until they're all done.
+     *
+     * @return the iteration counts.
+     * @throws IOException thrown if a tile is lost too many times, or on error.
+     */
+    public IterationBuffer run() throws IOException, InterruptedException {
+        Thread acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    Thread t = new Thread(() -> serve(socket), "coordinator-" + socket.getRemoteSocketAddress());
+                    t.setDaemon(true);
+                    t.start();
+                }
+                catch (IOException ex) {
+                    // closed at the end
+                }
+            }
+        }, "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try {
+            synchronized (this) {
+                while (remaining > 0 && failure == null) {
+                    wait();
+                }
+                for (Worker w : workers) {
+                    try {
+                        w.out.writeInt(ClusterProtocol.DONE);
+                        w.out.flush();
+                    }
+                    catch (IOException ex) {
+                        // it's finished anyway
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+            return buffer;
+        }
+        finally {
+            serverSocket.close();
+        }
+    }
+
+    private void serve(Socket socket) {
+        Worker w = null;
+        try {
+            socket.setKeepAlive(true);
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != ClusterProtocol.MAGIC) {
+                socket.close();
+                return;
+            }
+            int threads = Math.max(in.readInt(), 1);
+            w = new Worker(socket, out, threads);
+            synchronized (this) {
+                if (remaining == 0) {
+                    out.writeInt(ClusterProtocol.DONE);
+                    out.flush();
+                    socket.close();
+                    return;
+                }
+                out.writeInt(ClusterProtocol.JOB);
+                ClusterProtocol.writeBytes(out, propertyBytes);
+                workers.add(w);
+                System.out.println("Worker " + socket.getRemoteSocketAddress() + " joined with " + threads +
+                        " threads");
+                dispatch();
+            }
+
+            while (true) {
+                int op = in.readInt();
+                if (op == ClusterProtocol.FAILED) {
+                    int id = in.readInt();
+                    String error = in.readUTF();
+                    if (id < 0 || id >= tiles.length) {
+                        throw new IOException("invalid tile " + id);
+                    }
+                    failed(w, id, error);
+                    continue;
+                }
+                if (op != ClusterProtocol.RESULT) {
+                    throw new IOException("unexpected message " + op);
+                }
+                int id = in.readInt();
+                byte[] bytes = ClusterProtocol.readBytes(in);
+                if (id < 0 || id >= tiles.length) {
+                    throw new IOException("invalid tile " + id);
+                }
+                int[] r = tiles[id];
+                int[] counts = ClusterProtocol.inflate(bytes, r[2] * r[3]);
+                synchronized (this) {
+                    if (!done[id]) {
+                        for (int j = 0, k = 0; j < r[3]; j++) {
+                            for (int i = 0; i < r[2]; i++, k++) {
+                                buffer.set(r[0] + i, r[1] + j, counts[k]);
+                            }
+                        }
+                        done[id] = true;
+                        remaining--;
+                        // the other copies of a stolen tile don't count against their workers any more
+                        for (Worker other : workers) {
+                            other.assigned.remove(id);
+                        }
+                        if (remaining % Math.max(tiles.length / 20, 1) == 0) {
+                            System.out.println((tiles.length - remaining) + " of " + tiles.length + " tiles");
+                        }
+                        notifyAll();
+                    }
+                    w.assigned.remove(id);
+                    dispatch();
+                }
+            }
+        }
+        catch (IOException ex) {
+            if (w != null) {
+                lost(w, ex);
+            }
+        }
+    }
+
+    /** Requeue a lost worker's tiles.
+     */
+    private synchronized void lost(Worker w, IOException ex) {
+        if (!workers.remove(w) || remaining == 0) {
+            return;
+        }
+        try {
+            w.socket.close();
+        }
+        catch (IOException ignored) {
+        }
+        System.out.println("Lost worker " + w.socket.getRemoteSocketAddress() + " with " + w.assigned.size() +
+                " tiles" + (ex instanceof EOFException ? "" : ": " + ex));
+        for (Integer id : w.assigned) {
+            if (done[id] || isAssigned(id)) {
+                continue;
+            }
+            if (++retries[id] > MAX_RETRIES) {
+                failure = new IOException("tile " + id + " lost " + retries[id] + " times");
+                notifyAll();
+                return;
+            }
+            pending.addFirst(id);
+        }
+        w.assigned.clear();
+        dispatch();
+    }
+
+    /** Requeue a tile a worker failed to render.
+     */
+    private synchronized void failed(Worker w, int id, String error) {
+        w.assigned.remove(id);
+        if (!done[id] && remaining > 0) {
+            System.out.println("Tile " + id + " failed on " + w.socket.getRemoteSocketAddress() + ": " + error);
+            if (++retries[id] > MAX_RETRIES) {
+                failure = new IOException("tile " + id + " failed " + retries[id] + " times: " + error);
+                notifyAll();
+                return;
+            }
+            if (!isAssigned(id)) {
+                pending.addFirst(id);
+            }
+        }
+        dispatch();
+    }
+
+    private boolean isAssigned(int id) {
+        for (Worker w : workers) {
+            if (w.assigned.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Fill the workers' windows, from the queue or by stealing.
+     */
+    private void dispatch() {
+        for (Worker w : new ArrayList<>(workers)) {
+            try {
+                while (w.assigned.size() < w.window) {
+                    Integer id = pending.poll();
+                    if (id == null) {
+                        // only an idle worker steals, and only one tile at a time
+                        if (!w.assigned.isEmpty() || (id = steal(w)) == null) {
+                            break;
+                        }
+                    }
+                    w.assigned.add(id);
+                    int[] r = tiles[id];
+                    w.out.writeInt(ClusterProtocol.TILE);
+                    w.out.writeInt(id);
+                    for (int v : r) {
+                        w.out.writeInt(v);
+                    }
+                }
+                w.out.flush();
+            }
+            catch (IOException ex) {
+                // the worker's reader sees the closed socket and requeues its tiles
+                try {
+                    w.socket.close();
+                }
+                catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /** Pick an unfinished tile, one that the fewest other workers have, for an idle worker.
+     */
+    private Integer steal(Worker w) {
+        Integer best = null;
+        int bestHolders = Integer.MAX_VALUE;
+        for (int id = 0; id < tiles.length; id++) {
+            if (done[id] || w.assigned.contains(id)) {
+                continue;
+            }
+            int holders = 0;
+            for (Worker other : workers) {
+                if (other.assigned.contains(id)) {
+                    holders++;
+                }
+            }
+            if (holders < bestHolders) {
+                best = id;
+                bestHolders = holders;
+            }
+        }
+        return best;
+    }
+
+    public static void main(String... args) throws Exception {
+        int port = ClusterProtocol.DEFAULT_PORT;
+        InetAddress bind = InetAddress.getLoopbackAddress();
+        int tileSize = DEFAULT_TILE_SIZE;
+        int argi = 0;
+        try {
+            for (; argi < args.length && args[argi].startsWith("--"); argi++) {
+                if ("--port".equals(args[argi]) && argi + 1 < args.length) {
+                    port = Integer.parseInt(args[++argi]);
+                }
+                else if ("--bind".equals(args[argi]) && argi + 1 < args.length) {
+                    bind = InetAddress.getByName(args[++argi]);
+                }
+                else if ("--tile".equals(args[argi]) && argi + 1 < args.length) {
+                    tileSize = Integer.parseInt(args[++argi]);
+                }
+                else {
+                    usage(1);
+                }
+            }
+        }
+        catch (NumberFormatException ex) {
+            usage(1);
+        }
+        if (args.length - argi != 2) {
+            usage(1);
+        }
+
+        Properties p = new Properties();
+        try (InputStream in = new FileInputStream(args[argi])) {
+            p.load(in);
+        }
+        File out = new File(args[argi + 1]);
+        RenderCoordinator coordinator = new RenderCoordinator(p, new InetSocketAddress(bind, port), tileSize);
+        System.out.println("Writing " + coordinator.getContext().getEquation());
+        System.out.println("to " + out.getAbsolutePath());
+        System.out.println("waiting for workers on port " + coordinator.getAddress().getPort());
+        long startTime = System.nanoTime();
+        IterationBuffer buffer = coordinator.run();
+        System.out.println("Done in " + (System.nanoTime() - startTime) / 1000000L + "ms");
+        PaletteImages.writePNG(buffer.toImage(coordinator.getContext()), out);
+    }
+
+    private static void usage(Integer exit) {
+        System.err.println("Usage: java " + RenderCoordinator.class.getName() +
+                " [--port n] [--bind address] [--tile n] .properties out.png");
+        System.err.println("  --bind address  listen on address, not loopback; only on a trusted network, " +
+                "since workers aren't authenticated");
+        if (exit != null) {
+            System.exit(exit);
+        }
+    }
+}
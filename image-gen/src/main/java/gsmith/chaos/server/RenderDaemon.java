@@ -0,0 +1,290 @@
+package gsmith.chaos.server;
+
+import gsmith.chaos.DrawMapContext;
+import gsmith.chaos.IterationBuffer;
+import gsmith.chaos.PaletteImages;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A long-running render server, so that small renders don't pay for JVM startup, class loading and JIT warm-up
+ * every time. It listens on a localhost port for {@link RenderClient} requests (see {@link RenderProtocol}), renders
+ * them on a fixed pool of threads, and writes the images where the client asked. Requests with the same properties
+ * as a render that's already running wait for that render instead of starting another one.
+ * <p>
+ * Only requests with the daemon's token are taken, which only this user can read, and images are only written to
+ * .png files, so another local user can't have the daemon write over this user's files or stop it.
+ */
+public class RenderDaemon {
+    /** How long to wait for a client to send its request before dropping it.
+     */
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+
+    private final ServerSocket serverSocket;
+    private final byte[] token;
+    private final ExecutorService renderPool;
+    private final ExecutorService connectionPool;
+    /** The running renders, by their properties.
+     */
+    private final ConcurrentHashMap<Properties, CompletableFuture<Rendered>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger tmpCounter = new AtomicInteger();
+
+    private static final class Rendered {
+        final BufferedImage image;
+        final long ms;
+
+        Rendered(BufferedImage image, long ms) {
+            this.image = image;
+            this.ms = ms;
+        }
+    }
+
+    /** Constructor.
+     *
+     * @param port the localhost port to listen on, or 0 for any free port.
+     * @param threads the number of renders to run at once.
+     * @param tokenFile the file to write the token that clients must send to.
+     */
+    public RenderDaemon(int port, int threads, File tokenFile) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("illegal threads less than 1");
+        }
+        this.token = RenderProtocol.createToken(tokenFile).getBytes(StandardCharsets.US_ASCII);
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.renderPool = Executors.newFixedThreadPool(threads);
+        this.connectionPool = Executors.newCachedThreadPool();
+    }
+
+    /** Get the port being listened on.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Render a small image, so the common kernels are loaded and compiled before the first request.
+     */
+    public void warmUp() {
+        Properties p = new Properties();
+        p.setProperty("rootFinder", "newton");
+        p.setProperty("equation", "z^3-1");
+        p.setProperty("width", "128");
+        p.setProperty("height", "128");
+        p.setProperty("palette", "gradient");
+        for (int n = 0; n < 4; n++) {
+            render(p);
+        }
+    }
+
+    /** Accept requests until a STOP request, or until the socket is closed.
+     */
+    public void run() throws IOException {
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                }
+                catch (SocketException ex) {
+                    // closed by a STOP request
+                    break;
+                }
+                try {
+                    connectionPool.execute(() -> handle(socket));
+                }
+                catch (RejectedExecutionException ex) {
+                    // stopped since the accept
+                    socket.close();
+                    break;
+                }
+            }
+        }
+        finally {
+            close();
+        }
+    }
+
+    /** Stop accepting requests; running renders finish.
+     */
+    public void close() throws IOException {
+        serverSocket.close();
+        connectionPool.shutdown();
+        renderPool.shutdown();
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            s.setSoTimeout(READ_TIMEOUT_MILLIS);
+            if (in.readInt() != RenderProtocol.MAGIC) {
+                return;
+            }
+            if (!MessageDigest.isEqual(token, in.readUTF().getBytes(StandardCharsets.US_ASCII))) {
+                reply(out, false, "invalid token", 0L, false);
+                return;
+            }
+            int op = in.readInt();
+            if (op == RenderProtocol.STOP) {
+                reply(out, true, "stopping", 0L, false);
+                close();
+                return;
+            }
+            if (op != RenderProtocol.RENDER) {
+                reply(out, false, "unknown request " + op, 0L, false);
+                return;
+            }
+            File outFile = new File(in.readUTF());
+            if (!outFile.isAbsolute() || !outFile.getName().toLowerCase(Locale.ROOT).endsWith(".png")) {
+                reply(out, false, "invalid output " + outFile + ", must be an absolute path to a .png file", 0L,
+                        false);
+                return;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > RenderProtocol.MAX_PROPERTIES_LENGTH) {
+                reply(out, false, "invalid properties length " + length, 0L, false);
+                return;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            try {
+                Properties p = new Properties();
+                p.load(new ByteArrayInputStream(bytes));
+
+                CompletableFuture<Rendered> mine = new CompletableFuture<>();
+                CompletableFuture<Rendered> running = inFlight.putIfAbsent(p, mine);
+                boolean shared = running != null;
+                if (!shared) {
+                    running = mine;
+                    try {
+                        renderPool.execute(() -> {
+                            try {
+                                mine.complete(render(p));
+                            }
+                            catch (Throwable ex) {
+                                mine.completeExceptionally(ex);
+                            }
+                            finally {
+                                inFlight.remove(p, mine);
+                            }
+                        });
+                    }
+                    catch (RejectedExecutionException ex) {
+                        // a STOP came in; anyone already waiting on this render gets the same answer
+                        inFlight.remove(p, mine);
+                        mine.completeExceptionally(new IOException("daemon is stopping"));
+                    }
+                }
+                Rendered rendered = running.get();
+                write(rendered.image, outFile);
+                reply(out, true, outFile.getPath(), rendered.ms, shared);
+            }
+            catch (ExecutionException ex) {
+                reply(out, false, ex.getCause().toString(), 0L, false);
+            }
+            catch (IllegalArgumentException | IOException ex) {
+                reply(out, false, ex.toString(), 0L, false);
+            }
+        }
+        catch (IOException ex) {
+            System.err.println("Request failed: " + ex);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void reply(DataOutputStream out, boolean ok, String message, long ms, boolean shared)
+            throws IOException {
+        out.writeBoolean(ok);
+        out.writeUTF(message);
+        out.writeLong(ms);
+        out.writeBoolean(shared);
+        out.flush();
+    }
+
+    private static Rendered render(Properties p) {
+        long startTime = System.nanoTime();
+        DrawMapContext ctx = DrawMapContext.create(p);
+        IterationBuffer buffer = new IterationBuffer(ctx);
+        ctx.getImageRunner().run(ctx, (x, y, i, j, numIterations) -> buffer.set(i, j, numIterations)).join();
+        BufferedImage image = buffer.toImage(ctx);
+        return new Rendered(image, (System.nanoTime() - startTime) / 1000000L);
+    }
+
+    /** Write an image, through a temporary file, so that requests for the same file don't write over each other.
+     */
+    private void write(BufferedImage image, File out) throws IOException {
+        File tmp = new File(out.getPath() + "." + tmpCounter.incrementAndGet() + ".tmp");
+        try {
+            PaletteImages.writePNG(image, tmp);
+            Files.move(tmp.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    public static void main(String... args) throws Exception {
+        int port = RenderProtocol.DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File tokenFile = RenderProtocol.getDefaultTokenFile();
+        try {
+            for (int argi = 0; argi < args.length; argi++) {
+                if ("--port".equals(args[argi]) && argi + 1 < args.length) {
+                    port = Integer.parseInt(args[++argi]);
+                }
+                else if ("--threads".equals(args[argi]) && argi + 1 < args.length) {
+                    threads = Integer.parseInt(args[++argi]);
+                }
+                else if ("--token-file".equals(args[argi]) && argi + 1 < args.length) {
+                    tokenFile = new File(args[++argi]);
+                }
+                else {
+                    usage(1);
+                }
+            }
+        }
+        catch (NumberFormatException ex) {
+            usage(1);
+        }
+
+        RenderDaemon daemon = new RenderDaemon(port, threads, tokenFile);
+        daemon.warmUp();
+        System.out.println("Listening on localhost:" + daemon.getPort() + " with " + threads +
+                " render threads, token in " + tokenFile.getAbsolutePath());
+        daemon.run();
+    }
+
+    private static void usage(Integer exit) {
+        System.err.println("Usage: java " + RenderDaemon.class.getName() +
+                " [--port n] [--threads n] [--token-file file]");
+        System.err.println("  --token-file file  where to write the token clients must send (default ~/" +
+                RenderProtocol.DEFAULT_TOKEN_FILE + ")");
+        if (exit != null) {
+            System.exit(exit);
+        }
+    }
+}
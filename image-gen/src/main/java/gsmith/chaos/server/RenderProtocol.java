@@ -0,0 +1,97 @@
+package gsmith.chaos.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+
+/** The wire format between {@link RenderDaemon} and {@link RenderClient}, over a localhost TCP connection, one
+ * request per connection, written with DataOutputStream:
+ * <pre>
+ * request:  int MAGIC, UTF token, int op
+ *           RENDER: UTF absolute output path, ending in .png, int length, the .properties file's bytes
+ *           STOP:   nothing
+ * response: boolean ok, UTF message (the error when not ok), long render ms, boolean shared
+ * </pre>
+ * A shared render is one that was already running for an identical request, so this request only waited for it.
+ * <p>
+ * Any local process can connect to a localhost port, so the daemon only takes requests with its token: a random
+ * value it makes when it starts and writes to a file only its user can read, by default {@link #DEFAULT_TOKEN_FILE}
+ * under the user's home directory.
+ */
+final class RenderProtocol {
+    static final int MAGIC = 0x52454e44; // REND
+    static final int RENDER = 1;
+    static final int STOP = 2;
+    static final int DEFAULT_PORT = 7373;
+    /** The largest .properties file accepted.
+     */
+    static final int MAX_PROPERTIES_LENGTH = 1 << 20;
+    /** The token file, under the user's home directory, unless given with --token-file.
+     */
+    static final String DEFAULT_TOKEN_FILE = ".chaos/render-daemon.token";
+    private static final int TOKEN_BYTES = 32;
+
+    private RenderProtocol() {
+    }
+
+    static File getDefaultTokenFile() {
+        return new File(System.getProperty("user.home"), DEFAULT_TOKEN_FILE);
+    }
+
+    /** Make a new token and write it to a file, readable and writable only by this user.
+     *
+     * @return the token.
+     */
+    static String createToken(File file) throws IOException {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        String token = sb.toString();
+
+        Path path = file.getAbsoluteFile().toPath();
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        Path dir = path.getParent();
+        if (!Files.isDirectory(dir)) {
+            if (posix) {
+                Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(
+                        PosixFilePermissions.fromString("rwx------")));
+            }
+            else {
+                Files.createDirectories(dir);
+            }
+        }
+        // made private before the token goes in, then moved over any old one
+        Path tmp = posix ? Files.createTempFile(dir, file.getName(), ".tmp", PosixFilePermissions.asFileAttribute(
+                PosixFilePermissions.fromString("rw-------"))) : Files.createTempFile(dir, file.getName(), ".tmp");
+        try {
+            if (!posix) {
+                File f = tmp.toFile();
+                f.setReadable(false, false);
+                f.setWritable(false, false);
+                f.setReadable(true, true);
+                f.setWritable(true, true);
+            }
+            Files.write(tmp, token.getBytes(StandardCharsets.US_ASCII));
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+        return token;
+    }
+
+    /** Read the token from a file.
+     */
+    static String readToken(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII).trim();
+    }
+}
@@ -0,0 +1,208 @@
+package gsmith.chaos.server;
+
+import gsmith.chaos.DrawMapContext;
+import gsmith.chaos.IterationBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** A worker for {@link RenderCoordinator}: it connects to a coordinator, renders the tiles it's sent on a pool of
+ * threads, and sends back their iteration counts. Between jobs, and when it can't reach the coordinator, it keeps
+ * trying to connect, so a farm of workers can be left running.
+ */
+public class RenderWorker {
+    private static final long RETRY_MILLIS = 1000L;
+
+    private final InetSocketAddress coordinator;
+    private final int threads;
+
+    /** Constructor.
+     *
+     * @param coordinator the coordinator's address.
+     * @param threads the number of tiles to render at once.
+     */
+    public RenderWorker(InetSocketAddress coordinator, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("illegal threads less than 1");
+        }
+        this.coordinator = coordinator;
+        this.threads = threads;
+    }
+
+    /** Connect to the coordinator and render its tiles until it's done.
+     *
+     * @return the number of tiles rendered.
+     * @throws IOException thrown if the coordinator can't be reached, or goes away.
+     */
+    public int runJob() throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (Socket s = new Socket(coordinator.getAddress(), coordinator.getPort())) {
+            s.setKeepAlive(true);
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            out.writeInt(ClusterProtocol.MAGIC);
+            out.writeInt(threads);
+            out.flush();
+
+            if (in.readInt() != ClusterProtocol.JOB) {
+                throw new IOException("expected a job from " + coordinator);
+            }
+            Properties p = new Properties();
+            p.load(new ByteArrayInputStream(ClusterProtocol.readBytes(in)));
+            DrawMapContext ctx = DrawMapContext.create(p);
+            System.out.println("Rendering " + ctx.getEquation());
+
+            int tiles = 0;
+            for (int op = in.readInt(); op != ClusterProtocol.DONE; op = in.readInt()) {
+                if (op != ClusterProtocol.TILE) {
+                    throw new IOException("unexpected message " + op + " from " + coordinator);
+                }
+                int id = in.readInt();
+                int x = in.readInt();
+                int y = in.readInt();
+                int width = in.readInt();
+                int height = in.readInt();
+                DrawMapContext tile;
+                try {
+                    tile = ctx.region(x, y, width, height);
+                }
+                catch (IllegalArgumentException ex) {
+                    System.err.println("Tile " + id + " failed: " + ex);
+                    sendFailed(out, id, ex);
+                    continue;
+                }
+                pool.execute(() -> {
+                    try {
+                        byte[] result = ClusterProtocol.deflate(render(tile));
+                        synchronized (out) {
+                            out.writeInt(ClusterProtocol.RESULT);
+                            out.writeInt(id);
+                            ClusterProtocol.writeBytes(out, result);
+                            out.flush();
+                        }
+                    }
+                    catch (IOException ex) {
+                        // the reader finds out too, and gives up on the job
+                    }
+                    catch (Throwable ex) {
+                        // anything, even an Error, so the coordinator doesn't wait for the tile forever
+                        System.err.println("Tile " + id + " failed: " + ex);
+                        try {
+                            sendFailed(out, id, ex);
+                        }
+                        catch (IOException ignored) {
+                            // the reader finds out too
+                        }
+                    }
+                });
+                tiles++;
+            }
+            return tiles;
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Tell the coordinator that a tile failed, so it can give it out again, or give up on the job.
+     */
+    private static void sendFailed(DataOutputStream out, int id, Throwable ex) throws IOException {
+        synchronized (out) {
+            out.writeInt(ClusterProtocol.FAILED);
+            out.writeInt(id);
+            out.writeUTF(String.valueOf(ex));
+            out.flush();
+        }
+    }
+
+    /** Render a tile's iteration counts, in rows.
+     */
+    static int[] render(DrawMapContext tile) {
+        IterationBuffer buffer = new IterationBuffer(tile);
+        tile.getImageRunner().run(tile, (x, y, i, j, numIterations) -> buffer.set(i, j, numIterations)).join();
+        int[] counts = new int[tile.getWidth() * tile.getHeight()];
+        for (int j = 0, k = 0; j < tile.getHeight(); j++) {
+            for (int i = 0; i < tile.getWidth(); i++, k++) {
+                counts[k] = buffer.get(i, j);
+            }
+        }
+        return counts;
+    }
+
+    public static void main(String... args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean once = false;
+        int argi = 0;
+        try {
+            for (; argi < args.length && args[argi].startsWith("--"); argi++) {
+                if ("--threads".equals(args[argi]) && argi + 1 < args.length) {
+                    threads = Integer.parseInt(args[++argi]);
+                }
+                else if ("--once".equals(args[argi])) {
+                    once = true;
+                }
+                else {
+                    usage(1);
+                }
+            }
+        }
+        catch (NumberFormatException ex) {
+            usage(1);
+        }
+        if (args.length - argi != 1) {
+            usage(1);
+        }
+        String hostPort = args[argi];
+        int colon = hostPort.lastIndexOf(':');
+        InetSocketAddress address;
+        try {
+            address = colon < 0 ? new InetSocketAddress(hostPort, ClusterProtocol.DEFAULT_PORT) :
+                    new InetSocketAddress(hostPort.substring(0, colon),
+                            Integer.parseInt(hostPort.substring(colon + 1)));
+        }
+        catch (IllegalArgumentException ex) {
+            usage(1);
+            return;
+        }
+
+        RenderWorker worker = new RenderWorker(address, threads);
+        while (true) {
+            try {
+                int tiles = worker.runJob();
+                System.out.println("Done, " + tiles + " tiles");
+                if (once) {
+                    break;
+                }
+            }
+            catch (ConnectException ex) {
+                // no coordinator yet
+            }
+            catch (IOException ex) {
+                System.err.println("Lost " + address + ": " + ex);
+            }
+            catch (RuntimeException ex) {
+                // a job that can't be rendered here, like invalid properties
+                System.err.println("Job failed: " + ex);
+            }
+            Thread.sleep(RETRY_MILLIS);
+        }
+    }
+
+    private static void usage(Integer exit) {
+        System.err.println("Usage: java " + RenderWorker.class.getName() + " [--threads n] [--once] host[:port]");
+        if (exit != null) {
+            System.exit(exit);
+        }
+    }
+}
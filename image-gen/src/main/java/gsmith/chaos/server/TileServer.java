@@ -0,0 +1,437 @@
+package gsmith.chaos.server;
+
+import gsmith.chaos.DrawMapContext;
+import gsmith.chaos.ImageRunner;
+import gsmith.chaos.IterationBuffer;
+import gsmith.chaos.PaletteImages;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/** An HTTP server of 256x256 PNG tiles at /tiles/z/x/y.png, for slippy-map viewers like Leaflet or OpenLayers.
+ * Zoom level 0 is one tile of the base properties' viewport (start_x, end_x, start_y, end_y); each level splits each
+ * tile into 4, with x to the right and y down. Every tile uses the same palette.
+ * <p>
+ * Encoded tiles are kept in an LRU cache, up to a number of bytes. A tile's ETag comes from the properties, the
+ * palette and the tile's position, so a client's If-None-Match can be answered without rendering or caching the
+ * tile. Requests for a tile that's already rendering wait for that render, and a render stops when all of the
+ * clients waiting for it have gone away.
+ * <p>
+ * The JDK's HTTP server doesn't tell when a client disconnects, so while a tile renders, its waiting requests start a
+ * chunked response and write to it every {@link #PROBE_MILLIS}ms, for as long as the render takes; writing to a closed
+ * connection fails, which is how a request finds that its client is gone. The first write is the PNG signature and
+ * IHDR chunk, which are the same for every tile, and each one after is an empty private ancillary chunk, which PNG
+ * decoders skip. A streamed response has no ETag, and if the render fails, the connection is dropped without ending
+ * the chunked body, so the client sees a broken response rather than a complete one.
+ */
+public class TileServer {
+    /** The width and height of each tile.
+     */
+    public static final int TILE_SIZE = 256;
+    /** The deepest zoom level, beyond which a tile's pixels are too small for doubles to tell apart.
+     */
+    public static final int MAX_ZOOM = 40;
+
+    private static final long PROBE_MILLIS = 200L;
+    /** The length of the PNG signature and IHDR chunk that start every tile.
+     */
+    private static final int PNG_HEADER_LENGTH = 8 + 25;
+    /** An empty "waIt" chunk: ancillary, private, and safe to copy, so decoders skip it.
+     */
+    private static final byte[] KEEP_ALIVE = { 0, 0, 0, 0, 'w', 'a', 'I', 't', 0, 0, 0, 0 };
+    private static final Pattern TILE_PATH = Pattern.compile("/tiles/(\\d+)/(\\d+)/(\\d+)\\.png");
+
+    private final DrawMapContext base;
+    private final long configHash;
+    /** The start of every tile's PNG.
+     */
+    private final byte[] pngHeader;
+    private final HttpServer server;
+    private final ExecutorService renderPool;
+    private final ExecutorService exchangePool;
+    private final TileCache cache;
+    /** The running renders, by tile; guarded by itself.
+     */
+    private final Map<String, Render> inFlight = new HashMap<>();
+
+    /** A running tile render, and the number of requests waiting for it.
+     */
+    private static final class Render {
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        int waiters = 0;
+        volatile boolean cancelled = false;
+    }
+
+    /** Encoded tiles, evicting the least recently used ones past a number of bytes.
+     */
+    private static final class TileCache {
+        private final long maxBytes;
+        private long bytes = 0L;
+        private final LinkedHashMap<String, byte[]> tiles = new LinkedHashMap<>(64, 0.75f, true);
+
+        TileCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized byte[] get(String key) {
+            return tiles.get(key);
+        }
+
+        synchronized void put(String key, byte[] png) {
+            byte[] old = tiles.put(key, png);
+            bytes += png.length - (old != null ? old.length : 0);
+            for (Iterator<byte[]> it = tiles.values().iterator(); bytes > maxBytes && it.hasNext();) {
+                bytes -= it.next().length;
+                it.remove();
+            }
+        }
+    }
+
+    /** Constructor.
+     *
+     * @param p the base render properties; the width and height are ignored.
+     * @param address the address to listen on.
+     * @param threads the number of tiles to render at once.
+     * @param cacheBytes the size of the tile cache.
+     * @throws IllegalArgumentException thrown if the properties are invalid.
+     */
+    public TileServer(Properties p, InetSocketAddress address, int threads, long cacheBytes) throws IOException,
+            IllegalArgumentException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("illegal threads less than 1");
+        }
+        // the tiles are clones of this, so they all share its palette
+        this.base = DrawMapContext.create(p);
+        this.configHash = configHash(p, base);
+        this.pngHeader = Arrays.copyOf(encode(PaletteImages.createImage(base, TILE_SIZE, TILE_SIZE)),
+                PNG_HEADER_LENGTH);
+        this.cache = new TileCache(cacheBytes);
+        this.renderPool = Executors.newFixedThreadPool(threads);
+        this.exchangePool = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(address, 50);
+        this.server.setExecutor(exchangePool);
+        this.server.createContext("/tiles/", this::handle);
+    }
+
+    static {
+        CRC32 crc = new CRC32();
+        crc.update(KEEP_ALIVE, 4, 4);
+        long value = crc.getValue();
+        for (int i = 0; i < 4; i++) {
+            KEEP_ALIVE[8 + i] = (byte)(value >>> (24 - 8 * i));
+        }
+    }
+
+    private static long configHash(Properties p, DrawMapContext ctx) {
+        long h = 1125899906842597L;
+        // sorted, since the properties' order isn't fixed
+        for (Map.Entry<Object, Object> e : new TreeMap<>(p).entrySet()) {
+            h = 31L * h + e.getKey().hashCode();
+            h = 31L * h + e.getValue().hashCode();
+        }
+        for (int i = 0; i <= ctx.getMaxIterations(); i++) {
+            h = 31L * h + ctx.getColorForIteration(i).getRGB();
+        }
+        return h;
+    }
+
+    /** Start serving.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /** Stop serving, and stop the renders.
+     */
+    public void stop() {
+        server.stop(0);
+        renderPool.shutdownNow();
+        exchangePool.shutdownNow();
+    }
+
+    /** Get the address being listened on.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /** Get the context for a tile.
+     *
+     * @throws IllegalArgumentException thrown if there is no such tile.
+     */
+    public DrawMapContext getTileContext(int z, int x, int y) throws IllegalArgumentException {
+        if (z < 0 || z > MAX_ZOOM) {
+            throw new IllegalArgumentException("invalid zoom " + z);
+        }
+        long n = 1L << z;
+        if (x < 0 || x >= n || y < 0 || y >= n) {
+            throw new IllegalArgumentException("invalid tile " + x + ", " + y + " at zoom " + z);
+        }
+        double w = (base.getEndXCoord() - base.getStartXCoord()) / n;
+        double h = (base.getEndYCoord() - base.getStartYCoord()) / n;
+        DrawMapContext ctx = base.clone();
+        ctx.setWidth(TILE_SIZE);
+        ctx.setHeight(TILE_SIZE);
+        ctx.setStartXCoord(base.getStartXCoord() + x * w);
+        ctx.setEndXCoord(base.getStartXCoord() + (x + 1) * w);
+        ctx.setStartYCoord(base.getStartYCoord() + y * h);
+        ctx.setEndYCoord(base.getStartYCoord() + (y + 1) * h);
+        return ctx;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean aborted = false;
+        try {
+            Matcher m = TILE_PATH.matcher(exchange.getRequestURI().getPath());
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            DrawMapContext ctx;
+            int z;
+            int x;
+            int y;
+            try {
+                if (!m.matches()) {
+                    throw new IllegalArgumentException("not a tile");
+                }
+                z = Integer.parseInt(m.group(1));
+                x = Integer.parseInt(m.group(2));
+                y = Integer.parseInt(m.group(3));
+                ctx = getTileContext(z, x, y);
+            }
+            catch (IllegalArgumentException ex) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            String key = z + "/" + x + "/" + y;
+            String etag = "\"" + Long.toHexString(configHash) + "-" + z + "-" + x + "-" + y + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+            byte[] png = cache.get(key);
+            if (png != null || head) {
+                exchange.sendResponseHeaders(200, head ? -1 : png.length);
+                if (!head) {
+                    exchange.getResponseBody().write(png);
+                }
+                return;
+            }
+            if (!sendRendered(exchange, key, ctx)) {
+                // the JDK's server drops the connection when a handler throws, without ending the chunked body
+                aborted = true;
+                throw new IOException("tile " + key + " failed after its response started");
+            }
+        }
+        finally {
+            if (!aborted) {
+                exchange.close();
+            }
+        }
+    }
+
+    /** Wait for a tile's render, probing for the client going away, and send it.
+     *
+     * @return false if the response was started and can't be finished, so the connection has to be dropped.
+     */
+    private boolean sendRendered(HttpExchange exchange, String key, DrawMapContext ctx) throws IOException {
+        Render render = join(key, ctx);
+        OutputStream out = null;
+        byte[] png;
+        try {
+            while (true) {
+                try {
+                    png = render.future.get(PROBE_MILLIS, TimeUnit.MILLISECONDS);
+                    break;
+                }
+                catch (TimeoutException ex) {
+                    if (out == null) {
+                        // the ETag is only for complete tiles, and this one might not finish
+                        exchange.getResponseHeaders().remove("ETag");
+                        exchange.sendResponseHeaders(200, 0);
+                        out = exchange.getResponseBody();
+                        out.write(pngHeader);
+                    }
+                    else {
+                        out.write(KEEP_ALIVE);
+                    }
+                    out.flush();
+                }
+            }
+        }
+        catch (IOException ex) {
+            // the client is gone
+            leave(key, render);
+            return true;
+        }
+        catch (InterruptedException ex) {
+            leave(key, render);
+            Thread.currentThread().interrupt();
+            return out == null;
+        }
+        catch (ExecutionException | CancellationException ex) {
+            if (out == null) {
+                exchange.sendResponseHeaders(500, -1);
+                return true;
+            }
+            // too late for an error status
+            return false;
+        }
+        if (out == null) {
+            exchange.sendResponseHeaders(200, png.length);
+            exchange.getResponseBody().write(png);
+            return true;
+        }
+        if (png.length < pngHeader.length || !Arrays.equals(Arrays.copyOf(png, pngHeader.length), pngHeader)) {
+            // doesn't match what was sent
+            return false;
+        }
+        out.write(png, pngHeader.length, png.length - pngHeader.length);
+        return true;
+    }
+
+    private Render join(String key, DrawMapContext ctx) {
+        synchronized (inFlight) {
+            Render render = inFlight.get(key);
+            if (render == null) {
+                Render r = render = new Render();
+                inFlight.put(key, r);
+                renderPool.execute(() -> {
+                    try {
+                        if (r.cancelled) {
+                            throw new CancellationException();
+                        }
+                        byte[] png = render(ctx, r);
+                        cache.put(key, png);
+                        r.future.complete(png);
+                    }
+                    catch (Throwable ex) {
+                        r.future.completeExceptionally(ex);
+                    }
+                    finally {
+                        synchronized (inFlight) {
+                            inFlight.remove(key, r);
+                        }
+                    }
+                });
+            }
+            render.waiters++;
+            return render;
+        }
+    }
+
+    private void leave(String key, Render render) {
+        synchronized (inFlight) {
+            if (--render.waiters == 0) {
+                render.cancelled = true;
+                // a new request for this tile starts a new render
+                inFlight.remove(key, render);
+            }
+        }
+    }
+
+    private static byte[] render(DrawMapContext ctx, Render r) throws IOException {
+        IterationBuffer buffer = new IterationBuffer(ctx);
+        ctx.getImageRunner().run(ctx, new ImageRunner.Callback() {
+            @Override
+            public void callback(double x, double y, int i, int j, int numIterations) {
+                buffer.set(i, j, numIterations);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return r.cancelled;
+            }
+        }).join();
+        return encode(buffer.toImage(ctx));
+    }
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PaletteImages.writePNG(image, out);
+        return out.toByteArray();
+    }
+
+    public static void main(String... args) throws Exception {
+        int port = 8080;
+        InetAddress bind = InetAddress.getLoopbackAddress();
+        int threads = Runtime.getRuntime().availableProcessors();
+        long cacheMB = 64L;
+        int argi = 0;
+        try {
+            for (; argi < args.length && args[argi].startsWith("--"); argi++) {
+                if ("--port".equals(args[argi]) && argi + 1 < args.length) {
+                    port = Integer.parseInt(args[++argi]);
+                }
+                else if ("--bind".equals(args[argi]) && argi + 1 < args.length) {
+                    bind = InetAddress.getByName(args[++argi]);
+                }
+                else if ("--threads".equals(args[argi]) && argi + 1 < args.length) {
+                    threads = Integer.parseInt(args[++argi]);
+                }
+                else if ("--cache".equals(args[argi]) && argi + 1 < args.length) {
+                    cacheMB = Long.parseLong(args[++argi]);
+                }
+                else {
+                    usage(1);
+                }
+            }
+        }
+        catch (NumberFormatException ex) {
+            usage(1);
+        }
+        if (args.length - argi != 1) {
+            usage(1);
+        }
+
+        Properties p = new Properties();
+        try (InputStream in = new FileInputStream(args[argi])) {
+            p.load(in);
+        }
+        TileServer server = new TileServer(p, new InetSocketAddress(bind, port), threads, cacheMB << 20);
+        server.start();
+        System.out.println("Serving " + server.base.getEquation());
+        System.out.println("at http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() +
+                "/tiles/{z}/{x}/{y}.png");
+    }
+
+    private static void usage(Integer exit) {
+        System.err.println("Usage: java " + TileServer.class.getName() +
+                " [--port n] [--bind address] [--threads n] [--cache MB] .properties");
+        if (exit != null) {
+            System.exit(exit);
+        }
+    }
+}
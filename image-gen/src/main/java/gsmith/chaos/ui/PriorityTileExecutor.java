@@ -0,0 +1,136 @@
+package gsmith.chaos.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/** Runs tile renders on a pool of threads, most important first, and cancels the ones that stop mattering.
+ * Tasks run visible before not visible, then nearest the center of the view first, then in the order they were
+ * submitted. When the view changes, {@link #reprioritize} updates the waiting tasks' priorities and {@link #cancelIf}
+ * drops the ones that are no longer wanted, both waiting and running; a running task sees that through
+ * {@link Task#isCancelled} and stops early.
+ */
+public class PriorityTileExecutor {
+    /** A tile render.
+     */
+    public abstract static class Task implements Runnable, Comparable<Task> {
+        private volatile boolean cancelled = false;
+        private boolean visible = true;
+        private double distance = 0.0;
+        private long sequence;
+
+        /** Set the priority; only call this before submitting, or from {@link PriorityTileExecutor#reprioritize}.
+         *
+         * @param visible true if the tile is in the view.
+         * @param distance the distance from the tile to the center of the view.
+         */
+        public void setPriority(boolean visible, double distance) {
+            this.visible = visible;
+            this.distance = distance;
+        }
+
+        /** Tell if this has been cancelled, in which case a running render should stop.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            if (visible != o.visible) {
+                return visible ? -1 : 1;
+            }
+            int c = Double.compare(distance, o.distance);
+            return c != 0 ? c : Long.compare(sequence, o.sequence);
+        }
+    }
+
+    private final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>();
+    private final ThreadPoolExecutor pool;
+    private final Set<Task> running = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /** Constructor.
+     *
+     * @param threads the number of tiles to render at once.
+     */
+    public PriorityTileExecutor(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("illegal threads less than 1");
+        }
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, r -> {
+            Thread t = new Thread(r, "tile-render");
+            t.setDaemon(true);
+            return t;
+        }) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                running.add((Task)r);
+            }
+
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                running.remove(r);
+            }
+        };
+        // start the threads now, since tasks go straight into the queue
+        pool.prestartAllCoreThreads();
+    }
+
+    /** Queue a task.
+     */
+    public void submit(Task task) {
+        task.sequence = sequence.getAndIncrement();
+        pool.execute(task);
+    }
+
+    /** Update the priorities of the waiting tasks.
+     *
+     * @param update called for each waiting task, to call {@link Task#setPriority}.
+     */
+    public void reprioritize(Consumer<Task> update) {
+        // the queue orders on the way in, so take them all out and put them back
+        List<Runnable> waiting = new ArrayList<>();
+        queue.drainTo(waiting);
+        for (Runnable r : waiting) {
+            update.accept((Task)r);
+        }
+        queue.addAll(waiting);
+    }
+
+    /** Cancel the waiting and running tasks that match.
+     *
+     * @return the number cancelled.
+     */
+    public int cancelIf(Predicate<Task> cancel) {
+        int n = 0;
+        for (Runnable r : queue) {
+            Task task = (Task)r;
+            if (cancel.test(task) && queue.remove(task)) {
+                task.cancelled = true;
+                n++;
+            }
+        }
+        for (Task task : running) {
+            if (!task.cancelled && cancel.test(task)) {
+                task.cancelled = true;
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /** Cancel everything and stop the threads.
+     */
+    public void shutdown() {
+        cancelIf(t -> true);
+        pool.shutdownNow();
+    }
+}
@@ -1,12 +1,12 @@
 package gsmith.chaos.ui;
 
-import static javax.swing.SwingUtilities.invokeLater;
-
 import java.awt.BorderLayout;
-import java.awt.Color;
-import java.awt.Graphics;
+import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileInputStream;
@@ -19,14 +19,11 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Consumer;
 
 import javax.imageio.ImageIO;
 import javax.swing.AbstractAction;
 import javax.swing.JFileChooser;
+import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
@@ -126,8 +123,8 @@ public class ShowImageMain {
         window.setSize(Math.min(ctx.getWidth(), 800), Math.min(ctx.getHeight(), 800));
         window.setResizable(true);
 
-        // this will paint the image
-        ImageComponent<BufferedImage> panel = new ImageComponent<>();
+        // this will render and paint the view, in tiles
+        TileView panel = new TileView(ctx, Runtime.getRuntime().availableProcessors());
         panel.setDoubleBuffered(false);
         window.getContentPane().add(panel, BorderLayout.CENTER);
 
@@ -151,7 +148,10 @@ public class ShowImageMain {
                     lastSave = p;
                     //System.out.println("Saving " + p.right.getImageIOType() + " image to " + p.left);
                     try {
-                        ImageIO.write(panel.getImage(), p.right.getImageIOType(), p.left);
+                        // the view's image is TYPE_INT_RGB, which every writer can handle
+                        if (!ImageIO.write(panel.getImage(), p.right.getImageIOType(), p.left)) {
+                            throw new IOException("no " + p.right.getImageIOType() + " writer");
+                        }
                     }
                     catch (IOException ex) {
                         ex.printStackTrace();
@@ -161,78 +161,80 @@ public class ShowImageMain {
             }
         });
 
-        // show the window
-        window.setVisible(true);
+        // arrow keys pan by a quarter of the view, + and - zoom in and out at the center, 0 goes back to the start
+        bindKey(panel, KeyEvent.VK_LEFT, 0, "panLeft", () -> panel.pan(-panel.getWidth() / 4, 0));
+        bindKey(panel, KeyEvent.VK_RIGHT, 0, "panRight", () -> panel.pan(panel.getWidth() / 4, 0));
+        bindKey(panel, KeyEvent.VK_UP, 0, "panUp", () -> panel.pan(0, -panel.getHeight() / 4));
+        bindKey(panel, KeyEvent.VK_DOWN, 0, "panDown", () -> panel.pan(0, panel.getHeight() / 4));
+        bindKey(panel, KeyEvent.VK_EQUALS, 0, "zoomIn", () -> panel.zoom(1, panel.getWidth() / 2,
+                panel.getHeight() / 2));
+        bindKey(panel, KeyEvent.VK_PLUS, 0, "zoomIn", () -> panel.zoom(1, panel.getWidth() / 2,
+                panel.getHeight() / 2));
+        bindKey(panel, KeyEvent.VK_MINUS, 0, "zoomOut", () -> panel.zoom(-1, panel.getWidth() / 2,
+                panel.getHeight() / 2));
+        bindKey(panel, KeyEvent.VK_0, 0, "reset", panel::reset);
 
-        // start the math
-        calcuateAndShowImage(ctx, panel);
-    }
+        // dragging pans, and the wheel zooms at the mouse
+        MouseAdapter mouse = new MouseAdapter() {
+            private Point last = null;
 
-    private static void usage(Integer exit) {
-        System.err.println("Usage: java " + ShowImageMain.class.getName() + " .properties");
-        if (exit != null) {
-            System.exit(exit);
-        }
-    }
+            @Override
+            public void mousePressed(MouseEvent e) {
+                last = e.getPoint();
+            }
 
-    private static void runAndDispose(Graphics g, Consumer<Graphics> c) {
-        try {
-            c.accept(g);
-        }
-        finally {
-            g.dispose();
-        }
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (last != null) {
+                    panel.pan(last.x - e.getX(), last.y - e.getY());
+                    last = e.getPoint();
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                last = null;
+                printView(panel);
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                panel.zoom(-e.getWheelRotation(), e.getX(), e.getY());
+                printView(panel);
+            }
+        };
+        panel.addMouseListener(mouse);
+        panel.addMouseMotionListener(mouse);
+        panel.addMouseWheelListener(mouse);
+
+        // show the window, which starts the math
+        System.out.println("y=" + ctx.getEquation().toString());
+        window.setVisible(true);
+        panel.requestFocusInWindow();
     }
 
-    private static void calcuateAndShowImage(final DrawMapContext ctx, Imagable<BufferedImage> component) {
-        // create an image buffer that this will paint to
-        BufferedImage im = new BufferedImage(ctx.getWidth(), ctx.getHeight(), BufferedImage.TYPE_INT_RGB);
-        // initialize it to all black
-        runAndDispose(im.createGraphics(), g -> {
-            g.setColor(Color.BLACK);
-            g.fillRect(0, 0, im.getWidth(), im.getHeight());
+    private static void bindKey(TileView panel, int keyCode, int modifiers, String name, Runnable action) {
+        panel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(keyCode, modifiers), name);
+        panel.getActionMap().put(name, new AbstractAction(name) {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+                printView(panel);
+            }
         });
+    }
 
-        final long hashStep = ((long)ctx.getWidth() * (long)ctx.getHeight()) / 100L;
-        final AtomicLong counter = new AtomicLong(0L);
-        final AtomicInteger highestIteration = new AtomicInteger(0);
+    private static void printView(TileView panel) {
+        DrawMapContext view = panel.getViewContext();
+        System.out.println("x=" + view.getStartXCoord() + " to " + view.getEndXCoord() + ", y=" +
+                view.getStartYCoord() + " to " + view.getEndYCoord());
+    }
 
-        System.out.println("y=" + ctx.getEquation().toString());
-        System.out.println("x=" + ctx.getStartXCoord() + " to " + ctx.getEndXCoord() + " by " +
-                ctx.getStepX());
-        System.out.println("y=" + ctx.getStartYCoord() + " to " + ctx.getEndYCoord() + " by " +
-                ctx.getStepY());
-        // go
-        long startTime = System.nanoTime();
-        try {
-            System.out.println("Starting...");
-            ctx.getImageRunner().run(ctx, (x, y, i, j, numIterations) -> {
-                Color c = ctx.getColorForIteration(numIterations);
-                // update the image buffer
-                runAndDispose(im.createGraphics(), g -> {
-                    g.setColor(c);
-                    g.fillRect(i, j, 1, 1);
-                });
-                // have the component repaint the image
-                invokeLater(() -> component.setImage(im));
-                // progress
-                long stepNum = counter.incrementAndGet();
-                if (stepNum % hashStep == 0) {
-                    System.out.print('.');
-                }
-                // update this
-                highestIteration.getAndUpdate(v -> Math.max(v, numIterations));
-            }).get();
-        }
-        catch (InterruptedException ignore) {
-        }
-        catch (ExecutionException ex) {
-            ex.getCause().printStackTrace();
+    private static void usage(Integer exit) {
+        System.err.println("Usage: java " + ShowImageMain.class.getName() + " .properties");
+        if (exit != null) {
+            System.exit(exit);
         }
-        long endTime = System.nanoTime();
-        System.out.println();
-        System.out.println("Time=" + (endTime - startTime) + "ns.");
-        System.out.println("Highest # of iterations=" + highestIteration.get());
     }
 
     /** Prompt the user for a filename and image type.
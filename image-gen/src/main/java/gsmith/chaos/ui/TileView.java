@@ -0,0 +1,327 @@
+package gsmith.chaos.ui;
+
+import static javax.swing.SwingUtilities.invokeLater;
+
+import gsmith.chaos.DrawMapContext;
+import gsmith.chaos.ImageRunner;
+import gsmith.chaos.PaletteImages;
+
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+
+import javax.swing.JComponent;
+
+/** A component that shows a render as a pannable, zoomable view, rendered in tiles.
+ * The tiles are on a fixed pixel grid for each zoom level, so after a pan the tiles already rendered are still good
+ * and only the newly uncovered ones are rendered. Tiles render on a {@link PriorityTileExecutor}, visible ones first
+ * and from the center out, plus a ring of tiles just outside the view to make small pans instant. When the view
+ * changes, the tiles that no longer touch it (or are for another zoom level) are cancelled, even part way through,
+ * and the rest are reprioritized for the new view. Each tile renders with the base context's image runner.
+ */
+public class TileView extends JComponent {
+    private static final long serialVersionUID = 1L;
+
+    /** The width and height of each tile.
+     */
+    public static final int TILE_SIZE = 64;
+    /** The number of tiles around the view that are rendered ahead of a pan.
+     */
+    private static final int PREFETCH_TILES = 1;
+    /** The zoom levels allowed, out and in; much further in and doubles can't tell the pixels apart.
+     */
+    private static final int MIN_ZOOM = -8;
+    private static final int MAX_ZOOM = 40;
+
+    private final DrawMapContext base;
+    private final PriorityTileExecutor executor;
+
+    // the view, only changed on the event thread: the zoom level, and the grid pixel at the view's top-left
+    private int zoom = 0;
+    private long viewX;
+    private long viewY;
+    private long viewStartTime;
+    private int visibleLeft = 0;
+
+    /** The tiles of the current zoom level that have been started; only used on the event thread.
+     */
+    private final Map<Long, TileTask> tiles = new HashMap<>();
+
+    private final class TileTask extends PriorityTileExecutor.Task {
+        final int level;
+        final long tx;
+        final long ty;
+        final BufferedImage image;
+        volatile boolean done = false;
+        /** Set, along with done, when the tile couldn't be rendered, so it counts as finished but isn't drawn.
+         */
+        volatile boolean failed = false;
+        boolean counted = false;
+
+        TileTask(int level, long tx, long ty) {
+            this.level = level;
+            this.tx = tx;
+            this.ty = ty;
+            this.image = PaletteImages.createImage(base, TILE_SIZE, TILE_SIZE);
+        }
+
+        @Override
+        public void run() {
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                DrawMapContext ctx = getTileContext(level, tx, ty);
+                ctx.getImageRunner().run(ctx, new ImageRunner.Callback() {
+                    @Override
+                    public void callback(double x, double y, int i, int j, int numIterations) {
+                        PaletteImages.setPixel(image, ctx, i, j, numIterations);
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return TileTask.this.isCancelled();
+                    }
+                }).join();
+            }
+            catch (CancellationException ex) {
+                return;
+            }
+            catch (Throwable ex) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                System.err.println("Tile " + level + "/" + tx + "/" + ty + " failed: " + cause);
+                failed = true;
+            }
+            done = true;
+            invokeLater(() -> tileDone(this));
+        }
+    }
+
+    /** Constructor.
+     *
+     * @param base the render; its viewport is zoom level 0, at its width and height in pixels.
+     * @param threads the number of tiles to render at once.
+     */
+    public TileView(DrawMapContext base, int threads) {
+        this.base = base;
+        this.executor = new PriorityTileExecutor(threads);
+    }
+
+    /** Get the context of a tile.
+     */
+    private DrawMapContext getTileContext(int level, long tx, long ty) {
+        double scale = Math.pow(2.0, -level);
+        double stepX = base.getStepX() * scale;
+        double stepY = base.getStepY() * scale;
+        DrawMapContext ctx = base.clone();
+        ctx.setWidth(TILE_SIZE);
+        ctx.setHeight(TILE_SIZE);
+        ctx.setStartXCoord(base.getStartXCoord() + tx * TILE_SIZE * stepX);
+        ctx.setEndXCoord(base.getStartXCoord() + (tx + 1) * TILE_SIZE * stepX);
+        ctx.setStartYCoord(base.getStartYCoord() + ty * TILE_SIZE * stepY);
+        ctx.setEndYCoord(base.getStartYCoord() + (ty + 1) * TILE_SIZE * stepY);
+        return ctx;
+    }
+
+    /** Get the context for what's in view.
+     */
+    public DrawMapContext getViewContext() {
+        double scale = Math.pow(2.0, -zoom);
+        double stepX = base.getStepX() * scale;
+        double stepY = base.getStepY() * scale;
+        DrawMapContext ctx = base.clone();
+        ctx.setWidth(Math.max(getWidth(), 1));
+        ctx.setHeight(Math.max(getHeight(), 1));
+        ctx.setStartXCoord(base.getStartXCoord() + viewX * stepX);
+        ctx.setEndXCoord(base.getStartXCoord() + (viewX + ctx.getWidth()) * stepX);
+        ctx.setStartYCoord(base.getStartYCoord() + viewY * stepY);
+        ctx.setEndYCoord(base.getStartYCoord() + (viewY + ctx.getHeight()) * stepY);
+        return ctx;
+    }
+
+    /** Center the view on the picture, at zoom level 0.
+     */
+    public void reset() {
+        zoom = 0;
+        viewX = (base.getWidth() - getWidth()) / 2;
+        viewY = (base.getHeight() - getHeight()) / 2;
+        viewChanged();
+    }
+
+    /** Move the view by a number of pixels.
+     */
+    public void pan(int dx, int dy) {
+        viewX += dx;
+        viewY += dy;
+        viewChanged();
+    }
+
+    /** Zoom in or out by a power of 2, keeping a point in the view where it is.
+     *
+     * @param levels the number of levels to zoom in, or out if negative.
+     * @param px the x of the point in the view.
+     * @param py the y of the point in the view.
+     */
+    public void zoom(int levels, int px, int py) {
+        levels = Math.max(Math.min(levels, MAX_ZOOM - zoom), MIN_ZOOM - zoom);
+        if (levels == 0) {
+            return;
+        }
+        // the grid pixel under the point, at the new level
+        double factor = Math.pow(2.0, levels);
+        double gx = (viewX + px) * factor;
+        double gy = (viewY + py) * factor;
+        zoom += levels;
+        viewX = Math.round(gx - px);
+        viewY = Math.round(gy - py);
+        viewChanged();
+    }
+
+    /** Update the tiles for a new view: cancel, reprioritize and start them.
+     */
+    private void viewChanged() {
+        if (getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        viewStartTime = System.nanoTime();
+        int level = zoom;
+        long tx0 = Math.floorDiv(viewX, TILE_SIZE);
+        long ty0 = Math.floorDiv(viewY, TILE_SIZE);
+        long tx1 = Math.floorDiv(viewX + getWidth() - 1, TILE_SIZE);
+        long ty1 = Math.floorDiv(viewY + getHeight() - 1, TILE_SIZE);
+        double centerX = viewX + getWidth() / 2.0;
+        double centerY = viewY + getHeight() / 2.0;
+
+        int cancelled = executor.cancelIf(t -> {
+            TileTask tile = (TileTask)t;
+            return tile.level != level || tile.tx < tx0 - PREFETCH_TILES || tile.tx > tx1 + PREFETCH_TILES ||
+                    tile.ty < ty0 - PREFETCH_TILES || tile.ty > ty1 + PREFETCH_TILES;
+        });
+        // forget the cancelled and off-level tiles, keeping finished ones nearby for panning back
+        for (Iterator<TileTask> it = tiles.values().iterator(); it.hasNext();) {
+            TileTask tile = it.next();
+            if (tile.level != level || (tile.isCancelled() && !tile.done) ||
+                    Math.abs(tile.tx - (tx0 + tx1) / 2) > 4 * (tx1 - tx0 + 1) ||
+                    Math.abs(tile.ty - (ty0 + ty1) / 2) > 4 * (ty1 - ty0 + 1)) {
+                it.remove();
+            }
+        }
+        executor.reprioritize(t -> prioritize((TileTask)t, tx0, ty0, tx1, ty1, centerX, centerY));
+
+        int visible = 0;
+        for (long ty = ty0 - PREFETCH_TILES; ty <= ty1 + PREFETCH_TILES; ty++) {
+            for (long tx = tx0 - PREFETCH_TILES; tx <= tx1 + PREFETCH_TILES; tx++) {
+                boolean inView = tx >= tx0 && tx <= tx1 && ty >= ty0 && ty <= ty1;
+                TileTask tile = tiles.get(key(tx, ty));
+                if (tile == null) {
+                    tile = new TileTask(level, tx, ty);
+                    prioritize(tile, tx0, ty0, tx1, ty1, centerX, centerY);
+                    tiles.put(key(tx, ty), tile);
+                    executor.submit(tile);
+                }
+                // count the visible tiles left to render, for the timing
+                tile.counted = inView && !tile.done;
+                if (tile.counted) {
+                    visible++;
+                }
+            }
+        }
+        visibleLeft = visible;
+        if (cancelled > 0) {
+            System.out.println("Cancelled " + cancelled + " tiles");
+        }
+        repaint();
+    }
+
+    private static void prioritize(TileTask tile, long tx0, long ty0, long tx1, long ty1, double centerX,
+            double centerY) {
+        boolean inView = tile.tx >= tx0 && tile.tx <= tx1 && tile.ty >= ty0 && tile.ty <= ty1;
+        double dx = (tile.tx + 0.5) * TILE_SIZE - centerX;
+        double dy = (tile.ty + 0.5) * TILE_SIZE - centerY;
+        tile.setPriority(inView, dx * dx + dy * dy);
+    }
+
+    private static long key(long tx, long ty) {
+        return (tx << 32) ^ (ty & 0xffffffffL);
+    }
+
+    private void tileDone(TileTask tile) {
+        if (tiles.get(key(tile.tx, tile.ty)) != tile) {
+            return;
+        }
+        if (tile.counted) {
+            tile.counted = false;
+            if (--visibleLeft == 0) {
+                System.out.println("View done in " + (System.nanoTime() - viewStartTime) / 1000000L + "ms");
+            }
+        }
+        long x = tile.tx * TILE_SIZE - viewX;
+        long y = tile.ty * TILE_SIZE - viewY;
+        repaint(new Rectangle((int)Math.max(Math.min(x, Integer.MAX_VALUE), Integer.MIN_VALUE),
+                (int)Math.max(Math.min(y, Integer.MAX_VALUE), Integer.MIN_VALUE), TILE_SIZE, TILE_SIZE));
+    }
+
+    /** Get an image of what's in view.
+     */
+    public BufferedImage getImage() {
+        BufferedImage im = new BufferedImage(Math.max(getWidth(), 1), Math.max(getHeight(), 1),
+                BufferedImage.TYPE_INT_RGB);
+        Graphics g = im.getGraphics();
+        try {
+            paintTiles(g);
+        }
+        finally {
+            g.dispose();
+        }
+        return im;
+    }
+
+    @Override
+    public void setBounds(int x, int y, int width, int height) {
+        boolean resized = width != getWidth() || height != getHeight();
+        int oldWidth = getWidth();
+        int oldHeight = getHeight();
+        super.setBounds(x, y, width, height);
+        if (resized) {
+            if (oldWidth <= 0 || oldHeight <= 0) {
+                reset();
+            }
+            else {
+                // keep the center where it is
+                viewX += (oldWidth - width) / 2;
+                viewY += (oldHeight - height) / 2;
+                viewChanged();
+            }
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        g.clearRect(0, 0, getWidth(), getHeight());
+        paintTiles(g);
+    }
+
+    private void paintTiles(Graphics g) {
+        for (TileTask tile : tiles.values()) {
+            if (tile.done && !tile.failed) {
+                long x = tile.tx * TILE_SIZE - viewX;
+                long y = tile.ty * TILE_SIZE - viewY;
+                if (x > -TILE_SIZE && x < getWidth() && y > -TILE_SIZE && y < getHeight()) {
+                    g.drawImage(tile.image, (int)x, (int)y, null);
+                }
+            }
+        }
+    }
+
+    /** Stop rendering.
+     */
+    public void dispose() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,351 @@
+package gsmith.math;
+
+import java.util.Collection;
+import java.util.stream.IntStream;
+
+/** Use the Aberth-Ehrlich method for finding all the roots of a polynomial at once.
+ * Unlike {@link ComplexPolynomial#deflate(Complex, Complex, Complex, double, int, Collection, ComplexRootFinder)},
+ * this always works against the original polynomial, so there is no loss of accuracy from deflation, and one
+ * troublesome root doesn't fail the whole thing. The initial approximations come from the Newton polygon of the
+ * coefficients (per Bini), which keeps the iteration count low even for very high degrees. For large degrees, each
+ * sweep updates the roots in parallel.
+ */
+public class AberthMethod {
+    /** The default degree at or above which the root updates are done in parallel. */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 256;
+
+    // offset the starting angles so that they don't line up with any symmetry in the equation
+    private static final double ANGLE_OFFSET = 0.7;
+
+    private final int parallelThreshold;
+
+    /** Constructor, using {@link #DEFAULT_PARALLEL_THRESHOLD}.
+     */
+    public AberthMethod() {
+        this(DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /** Constructor.
+     *
+     * @param parallelThreshold the degree at or above which the root updates are done in parallel.
+     */
+    public AberthMethod(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /** Get the degree at or above which the root updates are done in parallel.
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /** Find all the roots of the polynomial.
+     *
+     * @param eq the polynomial.
+     * @param tolerance the tolerance for when a root estimation is close enough.
+     * @param maxIterations the maximum number of iterations.
+     * @param roots the collection to add the computed roots to; these are only added if all the roots are found.
+     * @return the number of iterations required to calculate the roots, less than 0 for an invalid equation, 0 for
+     *         exceeded maxIterations.
+     */
+    public int find(ComplexPolynomial eq, double tolerance, int maxIterations, Collection<Complex> roots) {
+        ComplexArray found = new ComplexArray(Math.max(getNumRoots(eq), 0));
+        int iterations = find(eq, tolerance, maxIterations, found);
+        if (iterations > 0) {
+            for (Complex root : found) {
+                roots.add(root);
+            }
+        }
+        return iterations;
+    }
+
+    /** Find all the roots of the polynomial.
+     *
+     * @param eq the polynomial.
+     * @param tolerance the tolerance for when a root estimation is close enough.
+     * @param maxIterations the maximum number of iterations.
+     * @param roots the array to hold the computed roots, at least eq.getOrder() long; if the equation has fewer roots
+     *            because its high-order coefficients are 0, the remaining elements are set to NaN. This is only
+     *            modified if all the roots are found.
+     * @return the number of iterations required to calculate the roots, less than 0 for an invalid equation, 0 for
+     *         exceeded maxIterations.
+     */
+    public int find(ComplexPolynomial eq, double tolerance, int maxIterations, ComplexArray roots) {
+        int n = getNumRoots(eq);
+        // no roots, or not an equation
+        if (n <= 0) {
+            return -1;
+        }
+        if (roots.size() < n) {
+            throw new IllegalArgumentException("roots array too small, " + roots.size() + " < " + n);
+        }
+        // any zero low-order coefficients are roots at exactly 0
+        int zeros = 0;
+        while (isZero(eq.a(zeros))) {
+            zeros++;
+        }
+        n -= zeros;
+        double[] aRe = new double[n + 1];
+        double[] aIm = new double[n + 1];
+        for (int i = 0; i <= n; i++) {
+            Complex c = eq.a(i + zeros);
+            aRe[i] = c != null ? c.re : 0.0;
+            aIm[i] = c != null ? c.im : 0.0;
+        }
+
+        int iterations = 1;
+        double[] zRe = new double[n];
+        double[] zIm = new double[n];
+        if (n > 0) {
+            initialApproximations(aRe, aIm, zRe, zIm);
+            iterations = n >= parallelThreshold ?
+                    iterateParallel(aRe, aIm, zRe, zIm, tolerance, maxIterations) :
+                    iterate(aRe, aIm, zRe, zIm, tolerance, maxIterations);
+            if (iterations <= 0) {
+                return iterations;
+            }
+        }
+
+        int r = 0;
+        for (; r < zeros; r++) {
+            roots.set(r, 0.0, 0.0);
+        }
+        // polish each root with a last Newton step against the polynomial
+        double[] step = new double[2];
+        for (int i = 0; i < n; i++, r++) {
+            newtonCorrection(aRe, aIm, zRe[i], zIm[i], step);
+            roots.set(r, zRe[i] - step[0], zIm[i] - step[1]);
+        }
+        for (; r < roots.size(); r++) {
+            roots.set(r, Double.NaN, Double.NaN);
+        }
+        return iterations;
+    }
+
+    /** Get the number of roots of the polynomial, which is its order ignoring any zero high-order coefficients.
+     */
+    private static int getNumRoots(ComplexPolynomial eq) {
+        int n = eq.getOrder();
+        while (n >= 0 && isZero(eq.a(n))) {
+            n--;
+        }
+        return n;
+    }
+
+    private static boolean isZero(Complex c) {
+        return c == null || (c.re == 0.0 && c.im == 0.0);
+    }
+
+    /** Do Gauss-Seidel style sweeps, using each updated root right away.
+     */
+    private static int iterate(double[] aRe, double[] aIm, double[] zRe, double[] zIm, double tolerance,
+            int maxIterations) {
+        int n = zRe.length;
+        boolean[] done = new boolean[n];
+        double[] w = new double[2];
+        for (int iter = 1; iter <= maxIterations; iter++) {
+            boolean allDone = true;
+            for (int k = 0; k < n; k++) {
+                if (!done[k]) {
+                    if (!aberthCorrection(aRe, aIm, zRe, zIm, k, w)) {
+                        return -1;
+                    }
+                    zRe[k] -= w[0];
+                    zIm[k] -= w[1];
+                    done[k] = Math.hypot(w[0], w[1]) < tolerance;
+                    allDone &= done[k];
+                }
+            }
+            if (allDone) {
+                return iter;
+            }
+        }
+        // we didn't find them all under the max # of iterations
+        return 0;
+    }
+
+    /** Do Jacobi style sweeps, computing all the updated roots in parallel from the previous ones.
+     */
+    private static int iterateParallel(double[] aRe, double[] aIm, double[] zRe, double[] zIm, double tolerance,
+            int maxIterations) {
+        int n = zRe.length;
+        boolean[] done = new boolean[n];
+        double[] wRe = new double[n];
+        double[] wIm = new double[n];
+        for (int iter = 1; iter <= maxIterations; iter++) {
+            boolean ok = IntStream.range(0, n).parallel().allMatch(k -> {
+                if (done[k]) {
+                    wRe[k] = wIm[k] = 0.0;
+                    return true;
+                }
+                double[] w = new double[2];
+                if (!aberthCorrection(aRe, aIm, zRe, zIm, k, w)) {
+                    return false;
+                }
+                wRe[k] = w[0];
+                wIm[k] = w[1];
+                return true;
+            });
+            if (!ok) {
+                return -1;
+            }
+            boolean allDone = true;
+            for (int k = 0; k < n; k++) {
+                if (!done[k]) {
+                    zRe[k] -= wRe[k];
+                    zIm[k] -= wIm[k];
+                    done[k] = Math.hypot(wRe[k], wIm[k]) < tolerance;
+                    allDone &= done[k];
+                }
+            }
+            if (allDone) {
+                return iter;
+            }
+        }
+        // we didn't find them all under the max # of iterations
+        return 0;
+    }
+
+    /** Compute the Aberth correction w = N / (1 - N * S) for root k, where N = p(z)/p'(z) is the Newton correction
+     * and S is the sum of 1 / (z - z_j) over the other roots.
+     *
+     * @return false if the correction can't be computed.
+     */
+    private static boolean aberthCorrection(double[] aRe, double[] aIm, double[] zRe, double[] zIm, int k,
+            double[] w) {
+        newtonCorrection(aRe, aIm, zRe[k], zIm[k], w);
+        double nRe = w[0];
+        double nIm = w[1];
+        // already exactly on a root
+        if (nRe == 0.0 && nIm == 0.0) {
+            return true;
+        }
+        if (Double.isNaN(nRe) || Double.isNaN(nIm)) {
+            return false;
+        }
+        double sRe = 0.0;
+        double sIm = 0.0;
+        double xRe = zRe[k];
+        double xIm = zIm[k];
+        for (int j = 0; j < zRe.length; j++) {
+            if (j != k) {
+                // 1 / (x - z_j)
+                double dRe = xRe - zRe[j];
+                double dIm = xIm - zIm[j];
+                double denom = dRe * dRe + dIm * dIm;
+                sRe += dRe / denom;
+                sIm -= dIm / denom;
+            }
+        }
+        // 1 - N * S
+        double bRe = 1.0 - (nRe * sRe - nIm * sIm);
+        double bIm = -(nRe * sIm + nIm * sRe);
+        double denom = bRe * bRe + bIm * bIm;
+        if (denom == 0.0 || Double.isNaN(denom)) {
+            return false;
+        }
+        w[0] = (nRe * bRe + nIm * bIm) / denom;
+        w[1] = (nIm * bRe - nRe * bIm) / denom;
+        return true;
+    }
+
+    /** Compute the Newton correction p(x) / p'(x) into result. For |x| > 1 this evaluates the reversed polynomial
+     * at 1 / x instead, so that high degrees don't overflow.
+     */
+    private static void newtonCorrection(double[] aRe, double[] aIm, double xRe, double xIm, double[] result) {
+        int n = aRe.length - 1;
+        double mod2 = xRe * xRe + xIm * xIm;
+        if (mod2 <= 1.0) {
+            // Horner's method for p(x) and p'(x)
+            double pRe = aRe[n];
+            double pIm = aIm[n];
+            double dRe = 0.0;
+            double dIm = 0.0;
+            for (int j = n - 1; j >= 0; j--) {
+                double t = dRe * xRe - dIm * xIm + pRe;
+                dIm = dRe * xIm + dIm * xRe + pIm;
+                dRe = t;
+                t = pRe * xRe - pIm * xIm + aRe[j];
+                pIm = pRe * xIm + pIm * xRe + aIm[j];
+                pRe = t;
+            }
+            divide(pRe, pIm, dRe, dIm, result);
+        }
+        else {
+            // with y = 1 / x and q the reversed polynomial, p(x) / p'(x) = x * q(y) / (n * q(y) - y * q'(y))
+            double yRe = xRe / mod2;
+            double yIm = -xIm / mod2;
+            double qRe = aRe[0];
+            double qIm = aIm[0];
+            double dRe = 0.0;
+            double dIm = 0.0;
+            for (int j = 1; j <= n; j++) {
+                double t = dRe * yRe - dIm * yIm + qRe;
+                dIm = dRe * yIm + dIm * yRe + qIm;
+                dRe = t;
+                t = qRe * yRe - qIm * yIm + aRe[j];
+                qIm = qRe * yIm + qIm * yRe + aIm[j];
+                qRe = t;
+            }
+            double topRe = xRe * qRe - xIm * qIm;
+            double topIm = xRe * qIm + xIm * qRe;
+            double bottomRe = n * qRe - (yRe * dRe - yIm * dIm);
+            double bottomIm = n * qIm - (yRe * dIm + yIm * dRe);
+            divide(topRe, topIm, bottomRe, bottomIm, result);
+        }
+    }
+
+    private static void divide(double re, double im, double byRe, double byIm, double[] result) {
+        if (re == 0.0 && im == 0.0) {
+            result[0] = result[1] = 0.0;
+            return;
+        }
+        double denom = byRe * byRe + byIm * byIm;
+        // this will be NaN or infinite for a 0 denominator, which the caller checks for
+        result[0] = (re * byRe + im * byIm) / denom;
+        result[1] = (im * byRe - re * byIm) / denom;
+    }
+
+    /** Compute the initial approximations from the upper convex hull of the points (i, log|a_i|), placing the roots
+     * for each edge of the hull on a circle whose radius comes from that edge's slope.
+     */
+    private static void initialApproximations(double[] aRe, double[] aIm, double[] zRe, double[] zIm) {
+        int n = aRe.length - 1;
+        double[] logA = new double[n + 1];
+        for (int i = 0; i <= n; i++) {
+            logA[i] = Math.log(Math.hypot(aRe[i], aIm[i]));
+        }
+        // Andrew's monotone chain for the upper hull, skipping zero coefficients
+        int[] hull = new int[n + 1];
+        int size = 0;
+        for (int i = 0; i <= n; i++) {
+            if (logA[i] == Double.NEGATIVE_INFINITY) {
+                continue;
+            }
+            while (size >= 2 && cross(hull[size - 2], hull[size - 1], i, logA) >= 0.0) {
+                size--;
+            }
+            hull[size++] = i;
+        }
+
+        int root = 0;
+        for (int h = 0; h < size - 1; h++) {
+            int k1 = hull[h];
+            int k2 = hull[h + 1];
+            int m = k2 - k1;
+            double radius = Math.exp((logA[k1] - logA[k2]) / m);
+            for (int i = 0; i < m; i++) {
+                double angle = 2.0 * Math.PI * i / m + 2.0 * Math.PI * h / n + ANGLE_OFFSET;
+                zRe[root] = radius * Math.cos(angle);
+                zIm[root] = radius * Math.sin(angle);
+                root++;
+            }
+        }
+    }
+
+    /** The cross product of (i2 - i1, l2 - l1) and (i3 - i1, l3 - l1), which is positive for a left turn.
+     */
+    private static double cross(int i1, int i2, int i3, double[] logA) {
+        return (i2 - i1) * (logA[i3] - logA[i1]) - (logA[i2] - logA[i1]) * (i3 - i1);
+    }
+}
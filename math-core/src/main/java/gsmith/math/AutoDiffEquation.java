@@ -0,0 +1,58 @@
+package gsmith.math;
+
+/** A ComplexEquation that gets exact first derivatives by forward-mode automatic differentiation.
+ * The function is evaluated once over {@link DualComplex}, which gives both f(x) and f'(x), so root finders that
+ * need f' (like {@link NewtonsMethod}) work without the cost and error of finite differences. Higher derivatives
+ * are not available, and are set to null.
+ * <p>
+ * For example:
+ * <pre>
+ * ComplexEquation eq = new AutoDiffEquation(z -&gt; z.sin().mul(z.exp()).sub(1.0), "sin(z)e^z - 1");
+ * </pre>
+ */
+public class AutoDiffEquation implements ComplexEquation {
+    private final DualComplexFunction function;
+    private final String name;
+
+    /** Constructor.
+     */
+    public AutoDiffEquation(DualComplexFunction function) {
+        this(function, null);
+    }
+
+    /** Constructor.
+     *
+     * @param function the function.
+     * @param name the display name, returned from toString(), or null for a default.
+     */
+    public AutoDiffEquation(DualComplexFunction function, String name) {
+        if (function == null) {
+            throw new IllegalArgumentException("missing 'function'");
+        }
+        this.function = function;
+        this.name = name;
+    }
+
+    /** Get the function.
+     */
+    public DualComplexFunction getFunction() {
+        return function;
+    }
+
+    @Override
+    public Complex f(Complex x, Complex[] deriv) {
+        DualComplex y = function.apply(DualComplex.variable(x));
+        if (deriv != null && deriv.length > 0) {
+            deriv[0] = y.deriv();
+            for (int i = 1; i < deriv.length; i++) {
+                deriv[i] = null;
+            }
+        }
+        return y.value();
+    }
+
+    @Override
+    public String toString() {
+        return name != null ? name : function.toString();
+    }
+}
@@ -83,11 +83,41 @@ public final class Complex implements Cloneable {
     }
 
     /** Divide by this specified number.
+     * This uses Smith's algorithm, which avoids both the square roots and most of the overflow and underflow of the
+     * textbook formula.
      */
     public Complex div(Complex op) {
-        Complex result = mul(op.conjugate());
-        return new Complex(result.re / (op.abs() * op.abs()),
-                result.im / (op.abs() * op.abs()));
+        if (Math.abs(op.re) >= Math.abs(op.im)) {
+            double r = op.im / op.re;
+            double denom = op.re + op.im * r;
+            return new Complex((re + im * r) / denom, (im - re * r) / denom);
+        }
+        else {
+            double r = op.re / op.im;
+            double denom = op.re * r + op.im;
+            return new Complex((re * r + im) / denom, (im * r - re) / denom);
+        }
+    }
+
+    /** Get 1 / this, using Smith's algorithm.
+     */
+    public Complex reciprocal() {
+        if (Math.abs(re) >= Math.abs(im)) {
+            double r = im / re;
+            double denom = re + im * r;
+            return new Complex(1.0 / denom, -r / denom);
+        }
+        else {
+            double r = re / im;
+            double denom = re * r + im;
+            return new Complex(r / denom, -1.0 / denom);
+        }
+    }
+
+    /** Get this * this.
+     */
+    public Complex square() {
+        return new Complex(re * re - im * im, 2.0 * re * im);
     }
 
     /** Get the absolute value of this, which is also the "r" of this in polar coordinates.
@@ -96,6 +126,13 @@ public final class Complex implements Cloneable {
         return Math.sqrt(re * re + im * im);
     }
 
+    /** Get the absolute value of this squared. This avoids the square root in {@link #abs()}, so it's the cheaper
+     * way to compare magnitudes.
+     */
+    public double absSquared() {
+        return re * re + im * im;
+    }
+
     /** Raise this to the specified power.
      */
     public Complex pow(double x) {
@@ -137,7 +174,7 @@ public final class Complex implements Cloneable {
             if (angle < 0) {
                 angle += Math.PI * 2;
             }
-            length = Math.pow(length, 1.0 / k);
+            length = k == 2 ? Math.sqrt(length) : Math.pow(length, 1.0 / k);
             angle = angle / k;
             a = length * Math.cos(angle);
             b = length * Math.sin(angle);
@@ -156,6 +193,50 @@ public final class Complex implements Cloneable {
         return integerRoot(2);
     }
 
+    /** Get the principal square root of this, the one with a non-negative real part (and, for negative real numbers,
+     * a non-negative imaginary part). This is the same root as pow(0.5), but computed algebraically with a single
+     * square root and no cancellation.
+     */
+    public Complex sqrtPrincipal() {
+        if (re == 0.0 && im == 0.0) {
+            return ZERO;
+        }
+        double t = Math.sqrt((Math.abs(re) + abs()) / 2.0);
+        if (re >= 0.0) {
+            return new Complex(t, im / (2.0 * t));
+        }
+        else {
+            return new Complex(Math.abs(im) / (2.0 * t), Math.copySign(t, im));
+        }
+    }
+
+    /** Raise this to the specified integer power, using exponentiation by squaring.
+     */
+    public Complex powInt(int n) {
+        if (n < 0) {
+            // -Integer.MIN_VALUE is still negative, so take one factor out first
+            return powInt(-(n + 1)).mul(this).reciprocal();
+        }
+        double resultRe = 1.0;
+        double resultIm = 0.0;
+        double baseRe = re;
+        double baseIm = im;
+        while (n > 0) {
+            if ((n & 1) != 0) {
+                double t = resultRe * baseRe - resultIm * baseIm;
+                resultIm = resultRe * baseIm + resultIm * baseRe;
+                resultRe = t;
+            }
+            n >>>= 1;
+            if (n > 0) {
+                double t = baseRe * baseRe - baseIm * baseIm;
+                baseIm = 2.0 * baseRe * baseIm;
+                baseRe = t;
+            }
+        }
+        return new Complex(resultRe, resultIm);
+    }
+
     /**
      * Returns arg(this), the angular polar coordinate of this complex number,
      * in the range -pi to pi. The return value is simply Math.atan2(imaginary
@@ -255,6 +336,10 @@ public final class Complex implements Cloneable {
         System.out.println("a - b = " + a.sub(b));
         System.out.println("a * b = " + a.mul(b));
         System.out.println("a / b = " + a.div(b));
+        System.out.println("1 / b = " + b.reciprocal());
+        System.out.println("a ^ 2 = " + a.square() + " = " + a.powInt(2));
+        System.out.println("a ^ 0.5 = " + a.sqrtPrincipal());
+        System.out.println("b ^ -3 = " + b.powInt(-3));
         System.out.println("a ^ 2.5 = " + a.pow(2.5));
         System.out.println("b ^ -0.75 = " + b.pow(-0.75));
         System.out.println("a.abs() = " + a.abs());
@@ -0,0 +1,304 @@
+package gsmith.math;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** A fixed-size array of complex numbers, stored as interleaved real and imaginary parts in a single double[].
+ * This avoids the object header and pointer chase per element of a Complex[], and keeps loops over the elements
+ * cache-friendly. Slices are views that share the same storage, so changes to a slice show up in the original.
+ */
+public final class ComplexArray implements Iterable<Complex> {
+    /**
+     * The interleaved storage, re at 2 * (offset + i) and im at 2 * (offset + i) + 1.
+     */
+    private final double[] data;
+    private final int offset;
+    private final int size;
+
+    /** Constructor for an array of zeros.
+     */
+    public ComplexArray(int size) {
+        this(new double[2 * size], 0, size);
+    }
+
+    /** Constructor from the specified numbers.
+     * Elements can be null to represent 0.
+     */
+    public ComplexArray(Complex... values) {
+        this(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                set(i, values[i]);
+            }
+        }
+    }
+
+    /** Constructor from the specified numbers.
+     * Elements can be null to represent 0.
+     */
+    public ComplexArray(Collection<Complex> values) {
+        this(values.toArray(new Complex[values.size()]));
+    }
+
+    /** Copy constructor. This copies the storage, so the result is never a view.
+     */
+    public ComplexArray(ComplexArray values) {
+        this(Arrays.copyOfRange(values.data, 2 * values.offset, 2 * (values.offset + values.size)), 0, values.size);
+    }
+
+    private ComplexArray(double[] data, int offset, int size) {
+        this.data = data;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /** Create an array that uses the specified interleaved real and imaginary parts as its storage.
+     */
+    public static ComplexArray wrap(double[] interleaved) {
+        if (interleaved.length % 2 != 0) {
+            throw new IllegalArgumentException("interleaved array must have an even length");
+        }
+        return new ComplexArray(interleaved, 0, interleaved.length / 2);
+    }
+
+    /** Get the number of elements.
+     */
+    public int size() {
+        return size;
+    }
+
+    /** Get the ith element.
+     */
+    public Complex get(int i) {
+        int j = index(i);
+        return new Complex(data[j], data[j + 1]);
+    }
+
+    /** Get the real part of the ith element.
+     */
+    public double re(int i) {
+        return data[index(i)];
+    }
+
+    /** Get the imaginary part of the ith element.
+     */
+    public double im(int i) {
+        return data[index(i) + 1];
+    }
+
+    /** Set the ith element.
+     */
+    public void set(int i, Complex value) {
+        set(i, value.re, value.im);
+    }
+
+    /** Set the ith element.
+     */
+    public void set(int i, double re, double im) {
+        int j = index(i);
+        data[j] = re;
+        data[j + 1] = im;
+    }
+
+    private int index(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index " + i + " out of range for size " + size);
+        }
+        return 2 * (offset + i);
+    }
+
+    /** Get a view of the elements from start (inclusive) to end (exclusive). This shares storage with this.
+     */
+    public ComplexArray slice(int start, int end) {
+        if (start < 0 || end > size || start > end) {
+            throw new IndexOutOfBoundsException("slice " + start + " to " + end + " out of range for size " + size);
+        }
+        return new ComplexArray(data, offset + start, end - start);
+    }
+
+    /** Copy the elements to a Complex[].
+     */
+    public Complex[] toArray() {
+        Complex[] a = new Complex[size];
+        for (int i = 0, j = 2 * offset; i < size; i++, j += 2) {
+            a[i] = new Complex(data[j], data[j + 1]);
+        }
+        return a;
+    }
+
+    /** Add the corresponding element of the specified array to each element of this, in place.
+     *
+     * @return this.
+     */
+    public ComplexArray add(ComplexArray op) {
+        checkSize(op);
+        for (int j = 2 * offset, k = 2 * op.offset, end = 2 * (offset + size); j < end; j++, k++) {
+            data[j] += op.data[k];
+        }
+        return this;
+    }
+
+    /** Add the specified number to each element of this, in place.
+     *
+     * @return this.
+     */
+    public ComplexArray add(Complex op) {
+        for (int j = 2 * offset, end = 2 * (offset + size); j < end; j += 2) {
+            data[j] += op.re;
+            data[j + 1] += op.im;
+        }
+        return this;
+    }
+
+    /** Multiply each element of this by the corresponding element of the specified array, in place.
+     *
+     * @return this.
+     */
+    public ComplexArray mul(ComplexArray op) {
+        checkSize(op);
+        for (int j = 2 * offset, k = 2 * op.offset, end = 2 * (offset + size); j < end; j += 2, k += 2) {
+            double re = data[j] * op.data[k] - data[j + 1] * op.data[k + 1];
+            data[j + 1] = data[j] * op.data[k + 1] + data[j + 1] * op.data[k];
+            data[j] = re;
+        }
+        return this;
+    }
+
+    /** Multiply each element of this by the specified number, in place.
+     *
+     * @return this.
+     */
+    public ComplexArray scale(Complex op) {
+        for (int j = 2 * offset, end = 2 * (offset + size); j < end; j += 2) {
+            double re = data[j] * op.re - data[j + 1] * op.im;
+            data[j + 1] = data[j] * op.im + data[j + 1] * op.re;
+            data[j] = re;
+        }
+        return this;
+    }
+
+    /** Multiply each element of this by the specified number, in place.
+     *
+     * @return this.
+     */
+    public ComplexArray scale(double op) {
+        for (int j = 2 * offset, end = 2 * (offset + size); j < end; j++) {
+            data[j] *= op;
+        }
+        return this;
+    }
+
+    private void checkSize(ComplexArray op) {
+        if (op.size != size) {
+            throw new IllegalArgumentException("size mismatch " + op.size + " != " + size);
+        }
+    }
+
+    /** Treat this as the coefficients of a polynomial, lowest power first, and evaluate it at x using Horner's
+     * method.
+     */
+    public Complex horner(Complex x) {
+        if (size == 0) {
+            return Complex.ZERO;
+        }
+        int j = 2 * (offset + size - 1);
+        double yRe = data[j];
+        double yIm = data[j + 1];
+        for (j -= 2; j >= 2 * offset; j -= 2) {
+            double t = x.re * yRe - x.im * yIm + data[j];
+            yIm = x.re * yIm + x.im * yRe + data[j + 1];
+            yRe = t;
+        }
+        return new Complex(yRe, yIm);
+    }
+
+    /** Treat this as the coefficients of a polynomial, lowest power first, and evaluate it at each of the specified
+     * points using Horner's method.
+     *
+     * @param xs the points.
+     * @param results the array to hold the results, the same size as xs; this can be xs itself.
+     * @return results.
+     */
+    public ComplexArray horner(ComplexArray xs, ComplexArray results) {
+        xs.checkSize(results);
+        int last = 2 * (offset + size - 1);
+        for (int i = 0, k = 2 * xs.offset, r = 2 * results.offset; i < xs.size; i++, k += 2, r += 2) {
+            double xRe = xs.data[k];
+            double xIm = xs.data[k + 1];
+            double yRe = 0.0;
+            double yIm = 0.0;
+            for (int j = last; j >= 2 * offset; j -= 2) {
+                double t = xRe * yRe - xIm * yIm + data[j];
+                yIm = xRe * yIm + xIm * yRe + data[j + 1];
+                yRe = t;
+            }
+            results.data[r] = yRe;
+            results.data[r + 1] = yIm;
+        }
+        return results;
+    }
+
+    @Override
+    public Iterator<Complex> iterator() {
+        return new Iterator<Complex>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < size;
+            }
+
+            @Override
+            public Complex next() {
+                if (i >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(i++);
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int j = 2 * offset, end = 2 * (offset + size); j < end; j++) {
+            long temp = Double.doubleToLongBits(data[j]);
+            result = 31 * result + (int)(temp ^ (temp >>> 32));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ComplexArray)) {
+            return false;
+        }
+        ComplexArray other = (ComplexArray)o;
+        if (other.size != size) {
+            return false;
+        }
+        for (int j = 2 * offset, k = 2 * other.offset, end = 2 * (offset + size); j < end; j++, k++) {
+            if (Double.doubleToLongBits(data[j]) != Double.doubleToLongBits(other.data[k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append(get(i));
+        }
+        return buf.append(']').toString();
+    }
+}
@@ -11,12 +11,21 @@ public interface ComplexEquation {
         return f(x, null);
     }
 
-    /** Evaluate f(x) and f'(x).
+    /** Evaluate f(x) and its derivatives.
      *
      * @param x x.
-     * @param deriv a Complex[1] to hold the value of f'(x); if null or length <
-     *            1, f'(x) does not need to be computed.
+     * @param deriv an array to hold the derivatives, where deriv[0] gets f'(x), deriv[1] gets f''(x), and so on; if
+     *            null or length < 1, no derivatives need to be computed. Implementations that cannot compute a
+     *            requested derivative should set that element to null.
      * @return f(x).
      */
     Complex f(Complex x, Complex[] deriv);
+
+    /** Get the order of this equation, if it is a polynomial.
+     *
+     * @return the highest power of x, or 0 or less if unknown or not a polynomial.
+     */
+    default int getOrder() {
+        return 0;
+    }
 }
@@ -0,0 +1,112 @@
+package gsmith.math;
+
+/** Fast Fourier transform helpers, for multiplying large polynomials.
+ */
+final class ComplexFFT {
+    private ComplexFFT() {
+    }
+
+    /** Multiply the polynomials with the specified coefficients using FFTs. This is O(n log n) rather than the
+     * O(n^2) of the schoolbook method, at the cost of some rounding error relative to the largest coefficient of the
+     * product. Coefficients can be null to represent 0.
+     *
+     * @return the coefficients of the product, which has a.length + b.length - 1 coefficients.
+     */
+    static Complex[] multiply(Complex[] a, Complex[] b) {
+        int resultLength = a.length + b.length - 1;
+        int n = Integer.highestOneBit(resultLength);
+        if (n < resultLength) {
+            n <<= 1;
+        }
+        double[] aRe = new double[n];
+        double[] aIm = new double[n];
+        double[] bRe = new double[n];
+        double[] bIm = new double[n];
+        fill(a, aRe, aIm);
+        fill(b, bRe, bIm);
+
+        transform(aRe, aIm, false);
+        transform(bRe, bIm, false);
+        // pointwise multiply into a
+        for (int i = 0; i < n; i++) {
+            double re = aRe[i] * bRe[i] - aIm[i] * bIm[i];
+            aIm[i] = aRe[i] * bIm[i] + aIm[i] * bRe[i];
+            aRe[i] = re;
+        }
+        transform(aRe, aIm, true);
+
+        Complex[] result = new Complex[resultLength];
+        for (int i = 0; i < resultLength; i++) {
+            result[i] = new Complex(aRe[i] / n, aIm[i] / n);
+        }
+        // the end coefficients are easy to get exactly, which keeps things like monic products monic
+        result[0] = coeff(a, 0).mul(coeff(b, 0));
+        result[resultLength - 1] = coeff(a, a.length - 1).mul(coeff(b, b.length - 1));
+        return result;
+    }
+
+    private static Complex coeff(Complex[] a, int i) {
+        return a[i] != null ? a[i] : Complex.ZERO;
+    }
+
+    private static void fill(Complex[] a, double[] re, double[] im) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != null) {
+                re[i] = a[i].re;
+                im[i] = a[i].im;
+            }
+        }
+    }
+
+    /** In-place iterative radix-2 FFT. The length must be a power of 2. The inverse is not scaled by 1/n.
+     */
+    static void transform(double[] re, double[] im, boolean inverse) {
+        int n = re.length;
+        // bit-reversal permutation
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        // twiddle factors, computed directly rather than by recurrence to keep the rounding error down
+        int half = n / 2;
+        double[] cos = new double[half];
+        double[] sin = new double[half];
+        double sign = inverse ? 1.0 : -1.0;
+        for (int i = 0; i < half; i++) {
+            double angle = 2.0 * Math.PI * i / n;
+            cos[i] = Math.cos(angle);
+            sin[i] = sign * Math.sin(angle);
+        }
+
+        for (int len = 2; len <= n; len <<= 1) {
+            int step = n / len;
+            int halfLen = len / 2;
+            for (int i = 0; i < n; i += len) {
+                for (int j = 0; j < halfLen; j++) {
+                    double wRe = cos[j * step];
+                    double wIm = sin[j * step];
+                    int u = i + j;
+                    int v = u + halfLen;
+                    double vRe = re[v] * wRe - im[v] * wIm;
+                    double vIm = re[v] * wIm + im[v] * wRe;
+                    re[v] = re[u] - vRe;
+                    im[v] = im[u] - vIm;
+                    re[u] += vRe;
+                    im[u] += vIm;
+                }
+            }
+        }
+    }
+}
@@ -6,11 +6,20 @@ import java.util.Collection;
 /** A complex-number polynomial equation.
  */
 public final class ComplexPolynomial implements ComplexEquation, Cloneable {
+    /**
+     * The number of coefficients above which multiplication uses an FFT, for both operands.
+     */
+    private static final int FFT_THRESHOLD = 48;
+
     /**
      * The coefficients.
      */
     private final Complex[] a;
 
+    // cached derivative coefficients, derivs[k] holds the coefficients of the (k + 1)th derivative; this is only
+    // filled in as far as has been requested
+    private volatile Complex[][] derivs = new Complex[0][];
+
     // cached hashCode() and toString()
     private Integer hashCode = null;
     private String toString = null;
@@ -33,6 +42,12 @@ public final class ComplexPolynomial implements ComplexEquation, Cloneable {
         System.arraycopy(a, 0, this.a, 0, a.length);
     }
 
+    /** Constructor from the coefficients.
+     */
+    public ComplexPolynomial(ComplexArray a) {
+        this.a = a.toArray();
+    }
+
     /** Copy constructor.
      */
     public ComplexPolynomial(ComplexPolynomial eq) {
@@ -42,14 +57,15 @@ public final class ComplexPolynomial implements ComplexEquation, Cloneable {
     /** Get the order of this polynomial. This is the highest power of x in the
      * equation. There will this + 1 coefficients.
      */
+    @Override
     public int getOrder() {
         return this.a.length - 1;
     }
 
-    /** Return the ith coefficient of the equation.
+    /** Return the ith coefficient of the equation, treating null as 0.
      */
     public Complex a(int i) {
-        return this.a[i];
+        return this.a[i] != null ? this.a[i] : Complex.ZERO;
     }
 
     /** Get the coefficients.
@@ -60,13 +76,174 @@ public final class ComplexPolynomial implements ComplexEquation, Cloneable {
         return a;
     }
 
-    /** Compute f(x) and f'(x). This will use Horner's method.
+    /** Add the specified polynomial.
+     */
+    public ComplexPolynomial add(ComplexPolynomial op) {
+        Complex[] sum = new Complex[Math.max(this.a.length, op.a.length)];
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] = coeff(this.a, i).add(coeff(op.a, i));
+        }
+        return new ComplexPolynomial(sum);
+    }
+
+    /** Multiply by the specified polynomial. For large orders this uses an FFT.
+     */
+    public ComplexPolynomial mul(ComplexPolynomial op) {
+        return new ComplexPolynomial(mul(this.a, op.a));
+    }
+
+    /** Multiply by the specified number.
+     */
+    public ComplexPolynomial mul(Complex op) {
+        Complex[] product = new Complex[this.a.length];
+        for (int i = 0; i < product.length; i++) {
+            product[i] = coeff(this.a, i).mul(op);
+        }
+        return new ComplexPolynomial(product);
+    }
+
+    /** Multiply by the specified number.
+     */
+    public ComplexPolynomial mul(double op) {
+        return mul(new Complex(op));
+    }
+
+    /** Get the derivative of this polynomial.
+     */
+    public ComplexPolynomial derivative() {
+        if (getOrder() < 1) {
+            return new ComplexPolynomial(Complex.ZERO);
+        }
+        return new ComplexPolynomial(getDerivativeCoefficients(1)[0]);
+    }
+
+    /** Create the monic polynomial with the specified roots, (x - r0)(x - r1)...
+     * This multiplies the linear factors together as a balanced product tree so that the large multiplications can
+     * use an FFT. Note that at high orders the coefficients can span a huge range, and the FFT rounding error is
+     * relative to the largest of them.
+     */
+    public static ComplexPolynomial fromRoots(Complex... roots) {
+        if (roots.length == 0) {
+            return new ComplexPolynomial(new Complex(1.0));
+        }
+        return new ComplexPolynomial(productOfRoots(roots, 0, roots.length));
+    }
+
+    /** Create the monic polynomial with the specified roots, (x - r0)(x - r1)...
+     */
+    public static ComplexPolynomial fromRoots(ComplexArray roots) {
+        return fromRoots(roots.toArray());
+    }
+
+    /** Get the coefficients of the product of (x - r) for the roots from start (inclusive) to end (exclusive).
+     */
+    private static Complex[] productOfRoots(Complex[] roots, int start, int end) {
+        if (end - start == 1) {
+            return new Complex[] { roots[start].mul(-1.0), new Complex(1.0) };
+        }
+        int mid = (start + end) >>> 1;
+        return mul(productOfRoots(roots, start, mid), productOfRoots(roots, mid, end));
+    }
+
+    /** Multiply the polynomials with the specified coefficients.
+     */
+    private static Complex[] mul(Complex[] a, Complex[] b) {
+        if (Math.min(a.length, b.length) > FFT_THRESHOLD) {
+            return ComplexFFT.multiply(a, b);
+        }
+        // schoolbook multiplication
+        double[] re = new double[a.length + b.length - 1];
+        double[] im = new double[re.length];
+        for (int i = 0; i < a.length; i++) {
+            Complex x = coeff(a, i);
+            for (int j = 0; j < b.length; j++) {
+                Complex y = coeff(b, j);
+                re[i + j] += x.re * y.re - x.im * y.im;
+                im[i + j] += x.re * y.im + x.im * y.re;
+            }
+        }
+        Complex[] product = new Complex[re.length];
+        for (int i = 0; i < product.length; i++) {
+            product[i] = new Complex(re[i], im[i]);
+        }
+        return product;
+    }
+
+    /** Get the ith coefficient, treating null or out of range as 0.
+     */
+    private static Complex coeff(Complex[] a, int i) {
+        return i < a.length && a[i] != null ? a[i] : Complex.ZERO;
+    }
+
+    /** Get the coefficients of the (k + 1)th derivative for each k less than the specified count, treating null
+     * coefficients as 0. These are computed on first use and cached.
+     */
+    private Complex[][] getDerivativeCoefficients(int count) {
+        Complex[][] d = this.derivs;
+        if (d.length >= count) {
+            return d;
+        }
+        synchronized (this) {
+            d = this.derivs;
+            if (d.length < count) {
+                int n = getOrder();
+                Complex[][] newD = Arrays.copyOf(d, count);
+                for (int k = d.length; k < count; k++) {
+                    // differentiate the previous derivative (or the equation itself)
+                    Complex[] prev = k == 0 ? this.a : newD[k - 1];
+                    Complex[] coeffs = new Complex[n - k];
+                    for (int j = 0; j < coeffs.length; j++) {
+                        coeffs[j] = coeff(prev, j + 1).mul(j + 1);
+                    }
+                    newD[k] = coeffs;
+                }
+                this.derivs = d = newD;
+            }
+            return d;
+        }
+    }
+
+    /** Compute f(x) for each of the specified points. This will use Horner's method.
+     *
+     * @param xs the points.
+     * @param results the array to hold the results, the same size as xs; this can be xs itself.
+     * @return results.
+     */
+    public ComplexArray f(ComplexArray xs, ComplexArray results) {
+        return new ComplexArray(this.a).horner(xs, results);
+    }
+
+    /** Compute f(x) and its derivatives. This will use Horner's method, evaluating all the requested derivatives in
+     * the same pass using cached derivative coefficients.
      */
     @Override
     public Complex f(Complex x, Complex[] deriv) {
         int n = getOrder();
+        // computing f''(x) or higher also
+        if (deriv != null && deriv.length >= 2) {
+            // derivatives past the order are 0
+            int numDerivs = Math.min(deriv.length, n);
+            Complex[][] d = getDerivativeCoefficients(numDerivs);
+            Complex y = a(n);
+            // z[k] accumulates the (k + 1)th derivative, which has order n - k - 1
+            Complex[] z = new Complex[numDerivs];
+            for (int k = 0; k < numDerivs; k++) {
+                z[k] = d[k][n - k - 1];
+            }
+            for (int j = n - 1; j >= 0; j--) {
+                // y = x * y + a[j]
+                y = x.mul(y).add(a(j));
+                // z[k] = x * z[k] + d[k][j], for each derivative that has a jth coefficient
+                for (int k = 0; k < numDerivs && j < n - k - 1; k++) {
+                    z[k] = x.mul(z[k]).add(d[k][j]);
+                }
+            }
+            System.arraycopy(z, 0, deriv, 0, numDerivs);
+            Arrays.fill(deriv, numDerivs, deriv.length, Complex.ZERO);
+            return y;
+        }
         // computing f'(x) also
-        if (deriv != null && deriv.length >= 1) {
+        else if (deriv != null && deriv.length >= 1) {
             Complex y = a(n);
             Complex z = a(n);
             for (int j = n - 1; j >= 1; j--) {
@@ -92,6 +269,8 @@ public final class ComplexPolynomial implements ComplexEquation, Cloneable {
     }
 
     /** Find the roots of this equation.
+    * This finds the roots one at a time, deflating the equation after each one. For high degrees,
+    * {@link AberthMethod} is faster and more accurate.
     *
     * @param x0 the first approximate root.
     * @param x1 the second approximate root.
@@ -167,6 +346,7 @@ public final class ComplexPolynomial implements ComplexEquation, Cloneable {
         int n = b.length - 1;
         Complex y = b[n];
         Complex[] a = new Complex[n];
+        a[n - 1] = y;
         for (int j = n - 1; j >= 1; j--) {
             y = root.mul(y).add(b[j]);
             a[j - 1] = y;
@@ -187,9 +367,9 @@ public final class ComplexPolynomial implements ComplexEquation, Cloneable {
      * @param roots the Complex[2] to store the roots.
      */
     private static void quadraticFormula(Complex a2, Complex a1, Complex a0, Complex[] roots) {
-        Complex tmp = a1.pow(2.0);
+        Complex tmp = a1.square();
         tmp = tmp.sub(a2.mul(a0).mul(4.0));
-        tmp = tmp.pow(0.5);
+        tmp = tmp.sqrtPrincipal();
         Complex bottom = a2.mul(2.0);
         roots[0] = a1.mul(-1.0).add(tmp).div(bottom);
         roots[1] = a1.mul(-1.0).sub(tmp).div(bottom);
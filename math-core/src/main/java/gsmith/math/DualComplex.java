@@ -0,0 +1,291 @@
+package gsmith.math;
+
+/** A dual complex number, a + b&epsilon; with &epsilon;^2 = 0, for forward-mode automatic differentiation.
+ * The real part a is the value of a function at some z, and the dual part b is its derivative there. Starting from
+ * {@link #variable(Complex)} and applying the operations here carries the exact derivative along with the value, so
+ * a function written against this gets f'(z) for about the cost of evaluating f(z).
+ *
+ * @see AutoDiffEquation
+ */
+public final class DualComplex {
+    /** The value's real part. */
+    public final double re;
+    /** The value's imaginary part. */
+    public final double im;
+    /** The derivative's real part. */
+    public final double dre;
+    /** The derivative's imaginary part. */
+    public final double dim;
+
+    /**
+     * Constructor.
+     */
+    public DualComplex(double re, double im, double dre, double dim) {
+        this.re = re;
+        this.im = im;
+        this.dre = dre;
+        this.dim = dim;
+    }
+
+    /** Constructor from a value and derivative.
+     */
+    public DualComplex(Complex value, Complex deriv) {
+        this(value.re, value.im, deriv.re, deriv.im);
+    }
+
+    /** Get the independent variable z, whose derivative is 1.
+     */
+    public static DualComplex variable(Complex z) {
+        return new DualComplex(z.re, z.im, 1.0, 0.0);
+    }
+
+    /** Get a constant, whose derivative is 0.
+     */
+    public static DualComplex constant(Complex c) {
+        return new DualComplex(c.re, c.im, 0.0, 0.0);
+    }
+
+    /** Get a constant, whose derivative is 0.
+     */
+    public static DualComplex constant(double re, double im) {
+        return new DualComplex(re, im, 0.0, 0.0);
+    }
+
+    /** Get the value.
+     */
+    public Complex value() {
+        return new Complex(re, im);
+    }
+
+    /** Get the derivative.
+     */
+    public Complex deriv() {
+        return new Complex(dre, dim);
+    }
+
+    /** Add the specified number.
+     */
+    public DualComplex add(DualComplex op) {
+        return new DualComplex(re + op.re, im + op.im, dre + op.dre, dim + op.dim);
+    }
+
+    /** Add the specified number.
+     */
+    public DualComplex add(Complex op) {
+        return new DualComplex(re + op.re, im + op.im, dre, dim);
+    }
+
+    /** Add the specified number.
+     */
+    public DualComplex add(double op) {
+        return new DualComplex(re + op, im, dre, dim);
+    }
+
+    /** Subtract the specified number.
+     */
+    public DualComplex sub(DualComplex op) {
+        return new DualComplex(re - op.re, im - op.im, dre - op.dre, dim - op.dim);
+    }
+
+    /** Subtract the specified number.
+     */
+    public DualComplex sub(Complex op) {
+        return new DualComplex(re - op.re, im - op.im, dre, dim);
+    }
+
+    /** Subtract the specified number.
+     */
+    public DualComplex sub(double op) {
+        return new DualComplex(re - op, im, dre, dim);
+    }
+
+    /** Get -this.
+     */
+    public DualComplex negate() {
+        return new DualComplex(-re, -im, -dre, -dim);
+    }
+
+    /** Multiply by the specified number.
+     */
+    public DualComplex mul(DualComplex op) {
+        // (a + b e)(c + d e) = ac + (ad + bc) e
+        return new DualComplex(re * op.re - im * op.im, re * op.im + im * op.re,
+                re * op.dre - im * op.dim + dre * op.re - dim * op.im,
+                re * op.dim + im * op.dre + dre * op.im + dim * op.re);
+    }
+
+    /** Multiply by the specified number.
+     */
+    public DualComplex mul(Complex op) {
+        return new DualComplex(re * op.re - im * op.im, re * op.im + im * op.re,
+                dre * op.re - dim * op.im, dre * op.im + dim * op.re);
+    }
+
+    /** Multiply by the specified number.
+     */
+    public DualComplex mul(double op) {
+        return new DualComplex(re * op, im * op, dre * op, dim * op);
+    }
+
+    /** Divide by the specified number.
+     */
+    public DualComplex div(DualComplex op) {
+        // (a / c)' = (a' - (a / c) * c') / c
+        Complex c = new Complex(op.re, op.im);
+        Complex v = new Complex(re, im).div(c);
+        Complex d = new Complex(dre, dim).sub(v.mul(new Complex(op.dre, op.dim))).div(c);
+        return new DualComplex(v, d);
+    }
+
+    /** Divide by the specified number.
+     */
+    public DualComplex div(Complex op) {
+        return new DualComplex(value().div(op), deriv().div(op));
+    }
+
+    /** Divide by the specified number.
+     */
+    public DualComplex div(double op) {
+        return new DualComplex(re / op, im / op, dre / op, dim / op);
+    }
+
+    /** Get 1 / this.
+     */
+    public DualComplex reciprocal() {
+        // (1 / a)' = -a' / a^2
+        Complex inv = value().reciprocal();
+        return new DualComplex(inv, deriv().mul(inv.square()).mul(-1.0));
+    }
+
+    /** Get this * this.
+     */
+    public DualComplex square() {
+        return mul(this);
+    }
+
+    /** Raise this to the specified integer power.
+     */
+    public DualComplex powInt(int n) {
+        if (n == 0) {
+            return constant(1.0, 0.0);
+        }
+        // (a^n)' = n * a^(n - 1) * a'
+        Complex v = value();
+        Complex pm1 = v.powInt(n - 1);
+        return new DualComplex(pm1.mul(v), pm1.mul(deriv()).mul(n));
+    }
+
+    /** Raise this to the specified power, using the principal branch of log.
+     */
+    public DualComplex pow(DualComplex op) {
+        // a^b = exp(b * log(a))
+        if (re == 0.0 && im == 0.0) {
+            return constant(0.0, 0.0);
+        }
+        return op.mul(log()).exp();
+    }
+
+    /** Raise this to the specified power, using the principal branch of log.
+     */
+    public DualComplex pow(double x) {
+        if (re == 0.0 && im == 0.0) {
+            return constant(0.0, 0.0);
+        }
+        // (a^x)' = x * a^x / a * a'
+        Complex v = value().pow(x);
+        return new DualComplex(v, v.div(value()).mul(deriv()).mul(x));
+    }
+
+    /** Get the principal square root of this.
+     */
+    public DualComplex sqrt() {
+        // sqrt(a)' = a' / (2 * sqrt(a))
+        Complex v = value().sqrtPrincipal();
+        return new DualComplex(v, deriv().div(v.mul(2.0)));
+    }
+
+    /** Get e^this.
+     */
+    public DualComplex exp() {
+        double mod = Math.exp(re);
+        Complex v = new Complex(mod * Math.cos(im), mod * Math.sin(im));
+        return new DualComplex(v, v.mul(deriv()));
+    }
+
+    /** Get the principal natural log of this.
+     */
+    public DualComplex log() {
+        Complex v = new Complex(Math.log(value().abs()), value().theta());
+        return new DualComplex(v, deriv().div(value()));
+    }
+
+    /** Get sin(this).
+     */
+    public DualComplex sin() {
+        return new DualComplex(sin(re, im), cos(re, im).mul(deriv()));
+    }
+
+    /** Get cos(this).
+     */
+    public DualComplex cos() {
+        return new DualComplex(cos(re, im), sin(re, im).mul(deriv()).mul(-1.0));
+    }
+
+    /** Get tan(this).
+     */
+    public DualComplex tan() {
+        // tan' = 1 / cos^2
+        Complex c = cos(re, im);
+        return new DualComplex(sin(re, im).div(c), deriv().div(c.square()));
+    }
+
+    /** Get sinh(this).
+     */
+    public DualComplex sinh() {
+        return new DualComplex(sinh(re, im), cosh(re, im).mul(deriv()));
+    }
+
+    /** Get cosh(this).
+     */
+    public DualComplex cosh() {
+        return new DualComplex(cosh(re, im), sinh(re, im).mul(deriv()));
+    }
+
+    private static Complex sin(double re, double im) {
+        return new Complex(Math.sin(re) * Math.cosh(im), Math.cos(re) * Math.sinh(im));
+    }
+
+    private static Complex cos(double re, double im) {
+        return new Complex(Math.cos(re) * Math.cosh(im), -Math.sin(re) * Math.sinh(im));
+    }
+
+    private static Complex sinh(double re, double im) {
+        return new Complex(Math.sinh(re) * Math.cos(im), Math.cosh(re) * Math.sin(im));
+    }
+
+    private static Complex cosh(double re, double im) {
+        return new Complex(Math.cosh(re) * Math.cos(im), Math.sinh(re) * Math.sin(im));
+    }
+
+    @Override
+    public String toString() {
+        return "(" + value() + ") + (" + deriv() + ")e";
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * value().hashCode() + deriv().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof DualComplex)) {
+            return false;
+        }
+        DualComplex other = (DualComplex)obj;
+        return value().equals(other.value()) && deriv().equals(other.deriv());
+    }
+}
@@ -0,0 +1,15 @@
+package gsmith.math;
+
+/** A complex function written against {@link DualComplex}, so that its derivative can be computed automatically.
+ *
+ * @see AutoDiffEquation
+ */
+@FunctionalInterface
+public interface DualComplexFunction {
+    /** Evaluate the function.
+     *
+     * @param z the argument, whose dual part is the derivative of z with respect to the independent variable.
+     * @return f(z), whose dual part is f'(z) times the dual part of z.
+     */
+    DualComplex apply(DualComplex z);
+}
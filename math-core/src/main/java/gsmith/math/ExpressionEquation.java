@@ -0,0 +1,83 @@
+package gsmith.math;
+
+/** A complex-number equation from an expression over z, such as "z^5 - 3*z + sin(z)" or "(z^2 + 1) / (z - 2i)".
+ * The expression is parsed once and compiled into a flat, register-based program that computes f(z) and f'(z)
+ * together, so the equation's derivative never needs to be written out by hand.
+ * <p>
+ * Expressions can use z (or x), i, pi, e, numbers, + - * / ^, parentheses, implicit multiplication (e.g. 3z or 2i),
+ * and the functions exp, log, sqrt, sin, cos, tan, sinh and cosh. Integer powers are done by repeated squaring.
+ */
+public final class ExpressionEquation implements ComplexEquation {
+    private final String expression;
+    private final ExpressionProgram program;
+    // each thread needs its own registers for the program
+    private final ThreadLocal<double[]> registers;
+
+    /** Constructor.
+     *
+     * @param expression the expression over z.
+     * @throws IllegalArgumentException thrown if the expression is invalid.
+     */
+    public ExpressionEquation(String expression) throws IllegalArgumentException {
+        this.expression = expression.trim();
+        this.program = ExpressionParser.parse(this.expression);
+        this.registers = ThreadLocal.withInitial(program::newRegisters);
+    }
+
+    /** Get the expression.
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    /** Create a register array for use with {@link #evaluate(double, double, double[], double[])}. Each thread
+     * needs its own.
+     */
+    public double[] newRegisters() {
+        return program.newRegisters();
+    }
+
+    /** Evaluate f(z) and f'(z) without allocating.
+     *
+     * @param re the real part of z.
+     * @param im the imaginary part of z.
+     * @param registers the registers, from {@link #newRegisters()}.
+     * @param out a double[4] to hold the real and imaginary parts of f(z), then of f'(z).
+     */
+    public void evaluate(double re, double im, double[] registers, double[] out) {
+        program.eval(re, im, registers, out);
+    }
+
+    /** Compute f(x) and f'(x). Higher derivatives aren't available, and will be set to null.
+     */
+    @Override
+    public Complex f(Complex x, Complex[] deriv) {
+        double[] out = new double[4];
+        program.eval(x.re, x.im, registers.get(), out);
+        if (deriv != null && deriv.length >= 1) {
+            deriv[0] = new Complex(out[2], out[3]);
+            for (int i = 1; i < deriv.length; i++) {
+                deriv[i] = null;
+            }
+        }
+        return new Complex(out[0], out[1]);
+    }
+
+    @Override
+    public int hashCode() {
+        return expression.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof ExpressionEquation) {
+            return expression.equals(((ExpressionEquation)o).expression);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,224 @@
+package gsmith.math;
+
+import java.util.Locale;
+
+/** Parses an expression over z into an {@link ExpressionProgram}.
+ * The grammar is:
+ * <pre>
+ * expr    := term (('+' | '-') term)*
+ * term    := unary (('*' | '/') unary | unary)*      -- a bare unary is implicit multiplication, e.g. 3z
+ * unary   := ('-' | '+') unary | power
+ * power   := primary ('^' unary)?                   -- right associative
+ * primary := number | 'z' | 'x' | 'i' | 'pi' | 'e' | function '(' expr ')' | '(' expr ')'
+ * </pre>
+ * Names are read a whole run of letters and digits at a time; a run that isn't a known name, but starts with a
+ * variable or constant, is split after that, so implicit multiplication works without spaces: 2iz is 2 * i * z, and
+ * zpi is z * pi. Constant subexpressions are folded while parsing, and integer powers become repeated squaring.
+ */
+final class ExpressionParser {
+    private final String text;
+    private int pos = 0;
+    private final ExpressionProgram.Builder builder = new ExpressionProgram.Builder();
+
+    private ExpressionParser(String text) {
+        this.text = text;
+    }
+
+    /** Parse the expression.
+     *
+     * @throws IllegalArgumentException thrown if the expression is invalid.
+     */
+    static ExpressionProgram parse(String text) throws IllegalArgumentException {
+        ExpressionParser parser = new ExpressionParser(text);
+        ExpressionProgram.Node node = parser.expr();
+        parser.skipSpace();
+        if (parser.pos < text.length()) {
+            throw parser.error("unexpected '" + text.charAt(parser.pos) + "'");
+        }
+        return parser.builder.build(node);
+    }
+
+    private ExpressionProgram.Node expr() {
+        ExpressionProgram.Node node = term();
+        while (true) {
+            if (accept('+')) {
+                node = builder.binary(ExpressionProgram.ADD, node, term());
+            }
+            else if (accept('-')) {
+                node = builder.binary(ExpressionProgram.SUB, node, term());
+            }
+            else {
+                return node;
+            }
+        }
+    }
+
+    private ExpressionProgram.Node term() {
+        ExpressionProgram.Node node = unary();
+        while (true) {
+            if (accept('*')) {
+                node = builder.binary(ExpressionProgram.MUL, node, unary());
+            }
+            else if (accept('/')) {
+                node = builder.binary(ExpressionProgram.DIV, node, unary());
+            }
+            else if (startsPrimary()) {
+                node = builder.binary(ExpressionProgram.MUL, node, unary());
+            }
+            else {
+                return node;
+            }
+        }
+    }
+
+    private ExpressionProgram.Node unary() {
+        if (accept('-')) {
+            return builder.unary(ExpressionProgram.NEG, unary());
+        }
+        if (accept('+')) {
+            return unary();
+        }
+        return power();
+    }
+
+    private ExpressionProgram.Node power() {
+        ExpressionProgram.Node base = primary();
+        if (accept('^')) {
+            return builder.power(base, unary());
+        }
+        return base;
+    }
+
+    private ExpressionProgram.Node primary() {
+        skipSpace();
+        if (pos >= text.length()) {
+            throw error("unexpected end of expression");
+        }
+        char c = text.charAt(pos);
+        if (accept('(')) {
+            ExpressionProgram.Node node = expr();
+            expect(')');
+            return node;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return builder.constant(number(), 0.0);
+        }
+        if (Character.isLetter(c)) {
+            int start = pos;
+            String name = identifier();
+            ExpressionProgram.Node node = name(name);
+            if (node != null) {
+                return node;
+            }
+            int op = ExpressionProgram.function(name);
+            if (op >= 0) {
+                expect('(');
+                ExpressionProgram.Node arg = expr();
+                expect(')');
+                return builder.unary(op, arg);
+            }
+            // implicit multiplication, e.g. iz: take the longest name the run starts with, and leave the rest
+            for (int len = name.length() - 1; len > 0; len--) {
+                node = name(name.substring(0, len));
+                if (node != null) {
+                    pos = start + len;
+                    return node;
+                }
+            }
+            pos = start;
+            throw error("unknown name '" + name + "'");
+        }
+        throw error("unexpected '" + c + "'");
+    }
+
+    /** Get the node for a variable or constant name.
+     *
+     * @return the node, or null if it isn't one.
+     */
+    private ExpressionProgram.Node name(String name) {
+        switch (name) {
+            case "z":
+            case "x":
+                return builder.variable();
+            case "i":
+                return builder.constant(0.0, 1.0);
+            case "pi":
+                return builder.constant(Math.PI, 0.0);
+            case "e":
+                return builder.constant(Math.E, 0.0);
+            default:
+                return null;
+        }
+    }
+
+    private double number() {
+        int start = pos;
+        while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+            pos++;
+        }
+        // exponent, but only if it's really followed by digits, so that things like 2e don't get eaten
+        if (pos < text.length() && (text.charAt(pos) == 'E' || text.charAt(pos) == 'e')) {
+            int save = pos++;
+            if (pos < text.length() && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+                pos++;
+            }
+            if (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                    pos++;
+                }
+            }
+            else {
+                pos = save;
+            }
+        }
+        try {
+            return Double.parseDouble(text.substring(start, pos));
+        }
+        catch (NumberFormatException ex) {
+            pos = start;
+            throw error("invalid number");
+        }
+    }
+
+    private String identifier() {
+        int start = pos;
+        while (pos < text.length() && Character.isLetterOrDigit(text.charAt(pos))) {
+            pos++;
+        }
+        return text.substring(start, pos).toLowerCase(Locale.ROOT);
+    }
+
+    private boolean startsPrimary() {
+        skipSpace();
+        if (pos >= text.length()) {
+            return false;
+        }
+        char c = text.charAt(pos);
+        return c == '(' || c == '.' || Character.isLetterOrDigit(c);
+    }
+
+    private boolean accept(char c) {
+        skipSpace();
+        if (pos < text.length() && text.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!accept(c)) {
+            throw error("expected '" + c + "'");
+        }
+    }
+
+    private void skipSpace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos + " in '" + text + "'");
+    }
+}
@@ -0,0 +1,458 @@
+package gsmith.math;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A compiled expression over z, as a flat list of register-based instructions that compute the value and the
+ * derivative (forward-mode) of each subexpression together.
+ * Each register is 4 doubles in a double[]: the value's real and imaginary parts, then the derivative's. Register 0
+ * is z itself; constants are preloaded into their registers by {@link #newRegisters()}, so evaluating doesn't
+ * allocate.
+ */
+final class ExpressionProgram {
+    // node types that aren't instructions
+    static final int CONST = 0;
+    static final int VAR = 1;
+    // binary instructions
+    static final int ADD = 2;
+    static final int SUB = 3;
+    static final int MUL = 4;
+    static final int DIV = 5;
+    static final int POW = 6;
+    // unary instructions
+    static final int NEG = 7;
+    static final int POWI = 8;
+    static final int EXP = 9;
+    static final int LOG = 10;
+    static final int SQRT = 11;
+    static final int SIN = 12;
+    static final int COS = 13;
+    static final int TAN = 14;
+    static final int SINH = 15;
+    static final int COSH = 16;
+
+    private static final String[] FUNCTIONS = {
+        "exp", "log", "sqrt", "sin", "cos", "tan", "sinh", "cosh"
+    };
+    private static final int[] FUNCTION_OPS = {
+        EXP, LOG, SQRT, SIN, COS, TAN, SINH, COSH
+    };
+
+    /** Get the instruction for a function name, or -1 if unknown.
+     */
+    static int function(String name) {
+        for (int i = 0; i < FUNCTIONS.length; i++) {
+            if (FUNCTIONS[i].equals(name)) {
+                return FUNCTION_OPS[i];
+            }
+        }
+        return -1;
+    }
+
+    /** The instructions, 4 ints each: op, dst, a, b (or the exponent for POWI); the registers are already
+     * multiplied by 4 to be offsets into the register array.
+     */
+    private final int[] code;
+    /** The initial register values. */
+    private final double[] init;
+    /** The offset of the result register. */
+    private final int result;
+
+    private ExpressionProgram(int[] code, double[] init, int result) {
+        this.code = code;
+        this.init = init;
+        this.result = result;
+    }
+
+    /** Get the number of instructions.
+     */
+    int size() {
+        return code.length / 4;
+    }
+
+    /** Create a register array for this program, with the constants loaded. Each thread evaluating the program needs
+     * its own.
+     */
+    double[] newRegisters() {
+        return init.clone();
+    }
+
+    /** Evaluate f(z) and f'(z).
+     *
+     * @param registers the registers, from {@link #newRegisters()}.
+     * @param out a double[4] to hold the real and imaginary parts of f(z), then of f'(z).
+     */
+    void eval(double zRe, double zIm, double[] registers, double[] out) {
+        registers[0] = zRe;
+        registers[1] = zIm;
+        registers[2] = 1.0;
+        registers[3] = 0.0;
+        final int[] code = this.code;
+        for (int pc = 0; pc < code.length; pc += 4) {
+            exec(code[pc], registers, code[pc + 1], code[pc + 2], code[pc + 3]);
+        }
+        out[0] = registers[result];
+        out[1] = registers[result + 1];
+        out[2] = registers[result + 2];
+        out[3] = registers[result + 3];
+    }
+
+    /** Execute one instruction.
+     */
+    private static void exec(int op, double[] r, int d, int a, int b) {
+        double aRe = r[a];
+        double aIm = r[a + 1];
+        double daRe = r[a + 2];
+        double daIm = r[a + 3];
+        double vRe;
+        double vIm;
+        double dvRe;
+        double dvIm;
+        switch (op) {
+            case ADD:
+                vRe = aRe + r[b];
+                vIm = aIm + r[b + 1];
+                dvRe = daRe + r[b + 2];
+                dvIm = daIm + r[b + 3];
+                break;
+            case SUB:
+                vRe = aRe - r[b];
+                vIm = aIm - r[b + 1];
+                dvRe = daRe - r[b + 2];
+                dvIm = daIm - r[b + 3];
+                break;
+            case MUL: {
+                double bRe = r[b];
+                double bIm = r[b + 1];
+                vRe = aRe * bRe - aIm * bIm;
+                vIm = aRe * bIm + aIm * bRe;
+                // a' * b + a * b'
+                dvRe = daRe * bRe - daIm * bIm + aRe * r[b + 2] - aIm * r[b + 3];
+                dvIm = daRe * bIm + daIm * bRe + aRe * r[b + 3] + aIm * r[b + 2];
+                break;
+            }
+            case DIV: {
+                double bRe = r[b];
+                double bIm = r[b + 1];
+                double inv = 1.0 / (bRe * bRe + bIm * bIm);
+                // 1 / b
+                double iRe = bRe * inv;
+                double iIm = -bIm * inv;
+                vRe = aRe * iRe - aIm * iIm;
+                vIm = aRe * iIm + aIm * iRe;
+                // (a' - v * b') / b
+                double tRe = daRe - (vRe * r[b + 2] - vIm * r[b + 3]);
+                double tIm = daIm - (vRe * r[b + 3] + vIm * r[b + 2]);
+                dvRe = tRe * iRe - tIm * iIm;
+                dvIm = tRe * iIm + tIm * iRe;
+                break;
+            }
+            case POW: {
+                if (aRe == 0.0 && aIm == 0.0) {
+                    vRe = vIm = dvRe = dvIm = 0.0;
+                    break;
+                }
+                double bRe = r[b];
+                double bIm = r[b + 1];
+                // v = exp(b * log(a))
+                double lRe = Math.log(Math.sqrt(aRe * aRe + aIm * aIm));
+                double lIm = Math.atan2(aIm, aRe);
+                double eRe = bRe * lRe - bIm * lIm;
+                double eIm = bRe * lIm + bIm * lRe;
+                double mod = Math.exp(eRe);
+                vRe = mod * Math.cos(eIm);
+                vIm = mod * Math.sin(eIm);
+                // v' = v * (b' * log(a) + b * a' / a)
+                double inv = 1.0 / (aRe * aRe + aIm * aIm);
+                double qRe = (daRe * aRe + daIm * aIm) * inv;
+                double qIm = (daIm * aRe - daRe * aIm) * inv;
+                double tRe = r[b + 2] * lRe - r[b + 3] * lIm + bRe * qRe - bIm * qIm;
+                double tIm = r[b + 2] * lIm + r[b + 3] * lRe + bRe * qIm + bIm * qRe;
+                dvRe = vRe * tRe - vIm * tIm;
+                dvIm = vRe * tIm + vIm * tRe;
+                break;
+            }
+            case NEG:
+                vRe = -aRe;
+                vIm = -aIm;
+                dvRe = -daRe;
+                dvIm = -daIm;
+                break;
+            case POWI: {
+                int n = b;
+                int m = Math.abs(n);
+                if (m == 0) {
+                    vRe = 1.0;
+                    vIm = dvRe = dvIm = 0.0;
+                    break;
+                }
+                // p = a^(m - 1) by squaring
+                double pRe = 1.0;
+                double pIm = 0.0;
+                double sRe = aRe;
+                double sIm = aIm;
+                for (int e = m - 1; e > 0; e >>>= 1) {
+                    if ((e & 1) != 0) {
+                        double t = pRe * sRe - pIm * sIm;
+                        pIm = pRe * sIm + pIm * sRe;
+                        pRe = t;
+                    }
+                    if (e > 1) {
+                        double t = sRe * sRe - sIm * sIm;
+                        sIm = 2.0 * sRe * sIm;
+                        sRe = t;
+                    }
+                }
+                // v = p * a, v' = m * p * a'
+                vRe = pRe * aRe - pIm * aIm;
+                vIm = pRe * aIm + pIm * aRe;
+                dvRe = m * (pRe * daRe - pIm * daIm);
+                dvIm = m * (pRe * daIm + pIm * daRe);
+                if (n < 0) {
+                    // 1 / v, and (1 / v)' = -v' / v^2
+                    double inv = 1.0 / (vRe * vRe + vIm * vIm);
+                    double iRe = vRe * inv;
+                    double iIm = -vIm * inv;
+                    double i2Re = iRe * iRe - iIm * iIm;
+                    double i2Im = 2.0 * iRe * iIm;
+                    double t = -(dvRe * i2Re - dvIm * i2Im);
+                    dvIm = -(dvRe * i2Im + dvIm * i2Re);
+                    dvRe = t;
+                    vRe = iRe;
+                    vIm = iIm;
+                }
+                break;
+            }
+            case EXP: {
+                double mod = Math.exp(aRe);
+                vRe = mod * Math.cos(aIm);
+                vIm = mod * Math.sin(aIm);
+                dvRe = vRe * daRe - vIm * daIm;
+                dvIm = vRe * daIm + vIm * daRe;
+                break;
+            }
+            case LOG: {
+                vRe = Math.log(Math.sqrt(aRe * aRe + aIm * aIm));
+                vIm = Math.atan2(aIm, aRe);
+                // a' / a
+                double inv = 1.0 / (aRe * aRe + aIm * aIm);
+                dvRe = (daRe * aRe + daIm * aIm) * inv;
+                dvIm = (daIm * aRe - daRe * aIm) * inv;
+                break;
+            }
+            case SQRT: {
+                if (aRe == 0.0 && aIm == 0.0) {
+                    vRe = vIm = 0.0;
+                    dvRe = dvIm = Double.POSITIVE_INFINITY;
+                    break;
+                }
+                double t = Math.sqrt((Math.abs(aRe) + Math.sqrt(aRe * aRe + aIm * aIm)) / 2.0);
+                if (aRe >= 0.0) {
+                    vRe = t;
+                    vIm = aIm / (2.0 * t);
+                }
+                else {
+                    vRe = Math.abs(aIm) / (2.0 * t);
+                    vIm = Math.copySign(t, aIm);
+                }
+                // a' / (2 * v)
+                double inv = 1.0 / (2.0 * (vRe * vRe + vIm * vIm));
+                dvRe = (daRe * vRe + daIm * vIm) * inv;
+                dvIm = (daIm * vRe - daRe * vIm) * inv;
+                break;
+            }
+            case SIN:
+            case COS:
+            case TAN: {
+                double sinRe = Math.sin(aRe) * Math.cosh(aIm);
+                double sinIm = Math.cos(aRe) * Math.sinh(aIm);
+                double cosRe = Math.cos(aRe) * Math.cosh(aIm);
+                double cosIm = -Math.sin(aRe) * Math.sinh(aIm);
+                if (op == SIN) {
+                    vRe = sinRe;
+                    vIm = sinIm;
+                    dvRe = cosRe * daRe - cosIm * daIm;
+                    dvIm = cosRe * daIm + cosIm * daRe;
+                }
+                else if (op == COS) {
+                    vRe = cosRe;
+                    vIm = cosIm;
+                    dvRe = -(sinRe * daRe - sinIm * daIm);
+                    dvIm = -(sinRe * daIm + sinIm * daRe);
+                }
+                else {
+                    // tan = sin / cos, tan' = a' / cos^2
+                    double inv = 1.0 / (cosRe * cosRe + cosIm * cosIm);
+                    double iRe = cosRe * inv;
+                    double iIm = -cosIm * inv;
+                    vRe = sinRe * iRe - sinIm * iIm;
+                    vIm = sinRe * iIm + sinIm * iRe;
+                    double i2Re = iRe * iRe - iIm * iIm;
+                    double i2Im = 2.0 * iRe * iIm;
+                    dvRe = daRe * i2Re - daIm * i2Im;
+                    dvIm = daRe * i2Im + daIm * i2Re;
+                }
+                break;
+            }
+            case SINH:
+            case COSH: {
+                double sinhRe = Math.sinh(aRe) * Math.cos(aIm);
+                double sinhIm = Math.cosh(aRe) * Math.sin(aIm);
+                double coshRe = Math.cosh(aRe) * Math.cos(aIm);
+                double coshIm = Math.sinh(aRe) * Math.sin(aIm);
+                if (op == SINH) {
+                    vRe = sinhRe;
+                    vIm = sinhIm;
+                    dvRe = coshRe * daRe - coshIm * daIm;
+                    dvIm = coshRe * daIm + coshIm * daRe;
+                }
+                else {
+                    vRe = coshRe;
+                    vIm = coshIm;
+                    dvRe = sinhRe * daRe - sinhIm * daIm;
+                    dvIm = sinhRe * daIm + sinhIm * daRe;
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("unknown instruction " + op);
+        }
+        r[d] = vRe;
+        r[d + 1] = vIm;
+        r[d + 2] = dvRe;
+        r[d + 3] = dvIm;
+    }
+
+    /** A node of the parsed expression tree.
+     */
+    static final class Node {
+        final int op;
+        final Node a;
+        final Node b;
+        // the exponent for POWI
+        final int n;
+        // the value for CONST
+        final double re;
+        final double im;
+        // the register offset, assigned when building the program
+        int reg = -1;
+
+        private Node(int op, Node a, Node b, int n, double re, double im) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.n = n;
+            this.re = re;
+            this.im = im;
+        }
+
+        boolean isConstant(double re, double im) {
+            return op == CONST && this.re == re && this.im == im;
+        }
+    }
+
+    /** Builds the expression tree, folding constant subexpressions as it goes, then the program from it.
+     */
+    static final class Builder {
+        private final Node var = new Node(VAR, null, null, 0, 0.0, 0.0);
+
+        Node variable() {
+            return var;
+        }
+
+        Node constant(double re, double im) {
+            return new Node(CONST, null, null, 0, re, im);
+        }
+
+        Node unary(int op, Node a) {
+            return fold(new Node(op, a, null, 0, 0.0, 0.0));
+        }
+
+        Node binary(int op, Node a, Node b) {
+            // identities
+            if ((op == ADD && a.isConstant(0.0, 0.0)) || (op == MUL && a.isConstant(1.0, 0.0))) {
+                return b;
+            }
+            if (((op == ADD || op == SUB) && b.isConstant(0.0, 0.0)) ||
+                    ((op == MUL || op == DIV) && b.isConstant(1.0, 0.0))) {
+                return a;
+            }
+            return fold(new Node(op, a, b, 0, 0.0, 0.0));
+        }
+
+        Node power(Node base, Node exponent) {
+            // integer powers get done by squaring
+            if (exponent.op == CONST && exponent.im == 0.0 && exponent.re == Math.rint(exponent.re) &&
+                    Math.abs(exponent.re) <= Integer.MAX_VALUE) {
+                int n = (int)exponent.re;
+                if (n == 1) {
+                    return base;
+                }
+                return fold(new Node(POWI, base, null, n, 0.0, 0.0));
+            }
+            return fold(new Node(POW, base, exponent, 0, 0.0, 0.0));
+        }
+
+        /** If all the operands are constant, evaluate the node now.
+         */
+        private Node fold(Node node) {
+            if (node.a.op != CONST || (node.b != null && node.b.op != CONST)) {
+                return node;
+            }
+            double[] r = new double[12];
+            r[4] = node.a.re;
+            r[5] = node.a.im;
+            if (node.b != null) {
+                r[8] = node.b.re;
+                r[9] = node.b.im;
+            }
+            exec(node.op, r, 0, 4, node.op == POWI ? node.n : 8);
+            return constant(r[0], r[1]);
+        }
+
+        ExpressionProgram build(Node root) {
+            List<Node> order = new ArrayList<>();
+            List<Node> constants = new ArrayList<>();
+            // register 0 is z
+            var.reg = 0;
+            int[] numRegs = { 1 };
+            assign(root, order, constants, numRegs);
+
+            double[] init = new double[4 * numRegs[0]];
+            for (Node c : constants) {
+                init[c.reg] = c.re;
+                init[c.reg + 1] = c.im;
+            }
+            int[] code = new int[4 * order.size()];
+            int pc = 0;
+            for (Node node : order) {
+                code[pc++] = node.op;
+                code[pc++] = node.reg;
+                code[pc++] = node.a.reg;
+                code[pc++] = node.op == POWI ? node.n : node.b != null ? node.b.reg : 0;
+            }
+            return new ExpressionProgram(code, init, root.reg);
+        }
+
+        /** Assign registers in post-order, collecting the instructions and constants.
+         */
+        private void assign(Node node, List<Node> order, List<Node> constants, int[] numRegs) {
+            if (node.reg >= 0) {
+                return;
+            }
+            if (node.a != null) {
+                assign(node.a, order, constants, numRegs);
+            }
+            if (node.b != null) {
+                assign(node.b, order, constants, numRegs);
+            }
+            node.reg = 4 * numRegs[0]++;
+            if (node.op == CONST) {
+                constants.add(node);
+            }
+            else {
+                order.add(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package gsmith.math;
+
+/** Use Halley's method for finding roots of an equation. This converges cubically, but needs f''(x) from the
+ * equation.
+ */
+public class HalleysMethod implements ResumableRootFinder {
+    @Override
+    public int find(Complex x0, Complex x1, Complex x2, double tolerance,
+            int maxIterations, ComplexEquation eq, Complex[] rootHolder) {
+        return find(x0, tolerance, maxIterations, eq, rootHolder);
+    }
+
+    public int find(Complex p0, double tolerance, int maxIterations,
+            ComplexEquation eq, Complex[] rootHolder) {
+        return find(p0, 1, tolerance, maxIterations, eq, rootHolder, null);
+    }
+
+    @Override
+    public int resume(Complex[] state, int iterations, double tolerance, int maxIterations, ComplexEquation eq,
+            Complex[] rootHolder) {
+        return find(state[0], iterations + 1, tolerance, maxIterations, eq, rootHolder, state);
+    }
+
+    private int find(Complex p0, int start, double tolerance, int maxIterations,
+            ComplexEquation eq, Complex[] rootHolder, Complex[] state) {
+        double toleranceSquared = tolerance * tolerance;
+        Complex p;
+        Complex f;
+        Complex[] derivs = new Complex[2];
+        for (int i = start; i <= maxIterations; i++) {
+            derivs[0] = derivs[1] = null;
+            f = eq.f(p0, derivs);
+            // failed -- the equation didn't give us the derivatives
+            if (derivs[0] == null || derivs[1] == null) {
+                rootHolder[0] = null;
+                return -1;
+            }
+            // p = p0 - (2 * f * f') / (2 * f'^2 - f * f'')
+            Complex top = f.mul(derivs[0]).mul(2.0);
+            Complex bottom = derivs[0].square().mul(2.0).sub(f.mul(derivs[1]));
+            // failed -- this would cause division by 0
+            if (bottom.equals(0.0)) {
+                rootHolder[0] = null;
+                return -1;
+            }
+            p = p0.sub(top.div(bottom));
+            if (p.sub(p0).absSquared() < toleranceSquared) {
+                rootHolder[0] = p;
+                return i;
+            }
+            p0 = p;
+        }
+        // this means we didn't find it under the max # of iterations
+        if (state != null) {
+            state[0] = p0;
+        }
+        rootHolder[0] = null;
+        return 0;
+    }
+}
@@ -0,0 +1,65 @@
+package gsmith.math;
+
+/** Use Householder's third-order method for finding roots of an equation. This converges quartically, but needs
+ * f''(x) and f'''(x) from the equation.
+ */
+public class HouseholdersMethod implements ResumableRootFinder {
+    @Override
+    public int find(Complex x0, Complex x1, Complex x2, double tolerance,
+            int maxIterations, ComplexEquation eq, Complex[] rootHolder) {
+        return find(x0, tolerance, maxIterations, eq, rootHolder);
+    }
+
+    public int find(Complex p0, double tolerance, int maxIterations,
+            ComplexEquation eq, Complex[] rootHolder) {
+        return find(p0, 1, tolerance, maxIterations, eq, rootHolder, null);
+    }
+
+    @Override
+    public int resume(Complex[] state, int iterations, double tolerance, int maxIterations, ComplexEquation eq,
+            Complex[] rootHolder) {
+        return find(state[0], iterations + 1, tolerance, maxIterations, eq, rootHolder, state);
+    }
+
+    private int find(Complex p0, int start, double tolerance, int maxIterations,
+            ComplexEquation eq, Complex[] rootHolder, Complex[] state) {
+        double toleranceSquared = tolerance * tolerance;
+        Complex p;
+        Complex f;
+        Complex[] derivs = new Complex[3];
+        for (int i = start; i <= maxIterations; i++) {
+            derivs[0] = derivs[1] = derivs[2] = null;
+            f = eq.f(p0, derivs);
+            // failed -- the equation didn't give us the derivatives
+            if (derivs[0] == null || derivs[1] == null || derivs[2] == null) {
+                rootHolder[0] = null;
+                return -1;
+            }
+            Complex f1 = derivs[0];
+            Complex f2 = derivs[1];
+            Complex f3 = derivs[2];
+            // p = p0 - (6 * f * f'^2 - 3 * f^2 * f'') / (6 * f'^3 - 6 * f * f' * f'' + f^2 * f''')
+            Complex ff = f.square();
+            Complex f1f1 = f1.square();
+            Complex top = f.mul(f1f1).mul(6.0).sub(ff.mul(f2).mul(3.0));
+            Complex bottom = f1f1.mul(f1).mul(6.0).sub(f.mul(f1).mul(f2).mul(6.0)).add(ff.mul(f3));
+            // failed -- this would cause division by 0
+            if (bottom.equals(0.0)) {
+                rootHolder[0] = null;
+                return -1;
+            }
+            p = p0.sub(top.div(bottom));
+            if (p.sub(p0).absSquared() < toleranceSquared) {
+                rootHolder[0] = p;
+                return i;
+            }
+            p0 = p;
+        }
+        // this means we didn't find it under the max # of iterations
+        if (state != null) {
+            state[0] = p0;
+        }
+        rootHolder[0] = null;
+        return 0;
+    }
+}
@@ -0,0 +1,103 @@
+package gsmith.math;
+
+/** Use Laguerre's method for finding roots of an equation. This converges cubically near simple roots and is very
+ * robust for polynomials, but needs f''(x) from the equation. It also needs the order of the equation; if the
+ * equation doesn't report one (see {@link ComplexEquation#getOrder()}), the configured default order is used.
+ */
+public class LaguerresMethod implements ResumableRootFinder {
+    public static final int DEFAULT_ORDER = 3;
+
+    private final int defaultOrder;
+
+    /** Constructor, using {@link #DEFAULT_ORDER} for equations that don't report their order.
+     */
+    public LaguerresMethod() {
+        this(DEFAULT_ORDER);
+    }
+
+    /** Constructor.
+     *
+     * @param defaultOrder the order to use for equations that don't report their order (greater than 0).
+     */
+    public LaguerresMethod(int defaultOrder) {
+        if (defaultOrder <= 0) {
+            throw new IllegalArgumentException("illegal defaultOrder less than 1");
+        }
+        this.defaultOrder = defaultOrder;
+    }
+
+    /** Get the order to use for equations that don't report their order.
+     */
+    public int getDefaultOrder() {
+        return defaultOrder;
+    }
+
+    @Override
+    public int find(Complex x0, Complex x1, Complex x2, double tolerance,
+            int maxIterations, ComplexEquation eq, Complex[] rootHolder) {
+        return find(x0, tolerance, maxIterations, eq, rootHolder);
+    }
+
+    public int find(Complex p0, double tolerance, int maxIterations,
+            ComplexEquation eq, Complex[] rootHolder) {
+        return find(p0, 1, tolerance, maxIterations, eq, rootHolder, null);
+    }
+
+    @Override
+    public int resume(Complex[] state, int iterations, double tolerance, int maxIterations, ComplexEquation eq,
+            Complex[] rootHolder) {
+        return find(state[0], iterations + 1, tolerance, maxIterations, eq, rootHolder, state);
+    }
+
+    private int find(Complex p0, int start, double tolerance, int maxIterations,
+            ComplexEquation eq, Complex[] rootHolder, Complex[] state) {
+        double toleranceSquared = tolerance * tolerance;
+        int n = eq.getOrder() > 0 ? eq.getOrder() : defaultOrder;
+        Complex p;
+        Complex f;
+        Complex[] derivs = new Complex[2];
+        for (int i = start; i <= maxIterations; i++) {
+            derivs[0] = derivs[1] = null;
+            f = eq.f(p0, derivs);
+            // landed exactly on the root
+            if (f.equals(0.0)) {
+                rootHolder[0] = p0;
+                return i;
+            }
+            // failed -- the equation didn't give us the derivatives
+            if (derivs[0] == null || derivs[1] == null) {
+                rootHolder[0] = null;
+                return -1;
+            }
+            // G = f' / f
+            Complex g = derivs[0].div(f);
+            // H = G^2 - f'' / f
+            Complex gg = g.square();
+            Complex h = gg.sub(derivs[1].div(f));
+            // sqrt((n - 1) * (n * H - G^2))
+            Complex sq = h.mul(n).sub(gg).mul(n - 1).sqrtPrincipal();
+            // use whichever denominator is larger to get the smaller step
+            Complex plus = g.add(sq);
+            Complex minus = g.sub(sq);
+            Complex bottom = plus.absSquared() >= minus.absSquared() ? plus : minus;
+            // failed -- this would cause division by 0
+            if (bottom.equals(0.0)) {
+                rootHolder[0] = null;
+                return -1;
+            }
+            // p = p0 - n / (G +- sqrt(...))
+            p = p0.sub(bottom.reciprocal().mul(n));
+            if (p.sub(p0).absSquared() < toleranceSquared) {
+                rootHolder[0] = p;
+                return i;
+            }
+            p0 = p;
+        }
+        // this means we didn't find it under the max # of iterations
+        if (state != null) {
+            state[0] = p0;
+        }
+        rootHolder[0] = null;
+        return 0;
+    }
+}
@@ -0,0 +1,153 @@
+package gsmith.math;
+
+/** Use a multiplicity-aware Newton's method for finding roots of an equation.
+ * Plain Newton's method only converges linearly near a root of multiplicity m, with each step shrinking by about
+ * (m - 1) / m. This watches the ratio of successive Newton steps to estimate m on the fly, and once the estimate is
+ * stable it takes the modified Newton step x - m * f(x) / f'(x), which restores quadratic convergence. Optionally, it
+ * can instead apply Aitken's delta-squared extrapolation while in the linear regime.
+ */
+public class ModifiedNewtonsMethod implements ComplexRootFinder {
+    /** The successive step ratio above which convergence is considered linear (i.e. a multiple root). */
+    private static final double LINEAR_RATIO_MIN = 0.4;
+    /** The successive step ratio below which convergence is considered linear. */
+    private static final double LINEAR_RATIO_MAX = 0.99;
+    /** The largest imaginary part of the successive step ratio for the steps to be considered aligned. */
+    private static final double ALIGNED_MAX = 0.1;
+    /** The largest multiplicity that will be estimated. */
+    private static final int MAX_MULTIPLICITY = 32;
+
+    private final boolean aitken;
+
+    /** Constructor, using the modified Newton step near multiple roots.
+     */
+    public ModifiedNewtonsMethod() {
+        this(false);
+    }
+
+    /** Constructor.
+     *
+     * @param aitken true to use Aitken's delta-squared extrapolation when linear convergence is detected, false to use
+     *            the modified Newton step.
+     */
+    public ModifiedNewtonsMethod(boolean aitken) {
+        this.aitken = aitken;
+    }
+
+    /** Tell if this uses Aitken's delta-squared extrapolation.
+     */
+    public boolean isAitken() {
+        return aitken;
+    }
+
+    @Override
+    public int find(Complex x0, Complex x1, Complex x2, double tolerance,
+            int maxIterations, ComplexEquation eq, Complex[] rootHolder) {
+        return find(x0, tolerance, maxIterations, eq, rootHolder);
+    }
+
+    public int find(Complex p0, double tolerance, int maxIterations,
+            ComplexEquation eq, Complex[] rootHolder) {
+        double toleranceSquared = tolerance * tolerance;
+        Complex p;
+        Complex f;
+        Complex[] fPrime = new Complex[1];
+        // the previous plain Newton step, the multiplier that was applied to it, and if something other than the
+        // plain Newton step was actually taken
+        Complex lastStep = null;
+        int lastMultiplier = 1;
+        boolean lastAccelerated = false;
+        // the current multiplicity estimate, and the previous raw estimate used to check it's stable
+        int m = 1;
+        int lastEstimate = 0;
+        // where the last step started from and |f| there, to back out of a bad accelerated step
+        Complex lastP0 = null;
+        double lastFAbsSquared = Double.POSITIVE_INFINITY;
+        // bit mask of the multiplicities that have been backed out of, so we don't keep trying them
+        long rejected = 0L;
+        for (int i = 1; i <= maxIterations; i++) {
+            f = eq.f(p0, fPrime);
+            // landed exactly on the root
+            if (f.equals(0.0)) {
+                rootHolder[0] = p0;
+                return i;
+            }
+            boolean noDeriv = fPrime[0] == null || fPrime[0].equals(0.0);
+            Complex step = noDeriv ? null : f.div(fPrime[0]);
+            // far from the roots, a polynomial looks like one big multiple root, so an accelerated step can land near
+            // a critical point or make things worse; if so, go back and take the plain Newton step instead
+            if (lastAccelerated && (noDeriv || f.absSquared() >= lastFAbsSquared ||
+                    step.absSquared() >= lastStep.absSquared())) {
+                p = lastP0.sub(lastStep);
+                if (p.sub(lastP0).absSquared() < toleranceSquared) {
+                    rootHolder[0] = p;
+                    return i;
+                }
+                p0 = p;
+                rejected |= 1L << lastMultiplier;
+                m = 1;
+                lastEstimate = 0;
+                lastStep = null;
+                lastMultiplier = 1;
+                lastAccelerated = false;
+                continue;
+            }
+            // failed -- this would cause division by 0
+            if (noDeriv) {
+                rootHolder[0] = null;
+                return -1;
+            }
+
+            p = null;
+            if (lastStep != null) {
+                // the error contracted by this much over the last step; for a root of multiplicity M, a step of
+                // lastMultiplier * h leaves a contraction of 1 - lastMultiplier / M, which goes negative when the
+                // last step overshot
+                Complex ratio = step.div(lastStep);
+                double c = ratio.re;
+                boolean linear = Math.abs(ratio.im) < ALIGNED_MAX && c < LINEAR_RATIO_MAX &&
+                        (lastMultiplier > 1 || c > LINEAR_RATIO_MIN);
+                if (aitken) {
+                    if (linear && !lastAccelerated) {
+                        // x* = x(k+1) - h(k)^2 / (h(k-1) - h(k))
+                        Complex denom = lastStep.sub(step);
+                        if (!denom.equals(0.0)) {
+                            p = p0.sub(step).sub(step.square().div(denom));
+                        }
+                    }
+                }
+                else if (linear) {
+                    int estimate = (int)Math.round(lastMultiplier / (1.0 - c));
+                    estimate = Math.max(1, Math.min(estimate, MAX_MULTIPLICITY));
+                    // only switch up once two successive estimates agree, so we don't overshoot far from the root,
+                    // but always drop back down right away
+                    if ((estimate == lastEstimate && (rejected & (1L << estimate)) == 0L) || estimate < m) {
+                        m = estimate;
+                    }
+                    lastEstimate = estimate;
+                }
+                // the steps aren't behaving like we're near a multiple root, so go back to plain Newton
+                else if (m > 1 && ratio.absSquared() >= 1.0) {
+                    m = 1;
+                    lastEstimate = 0;
+                }
+            }
+            lastAccelerated = p != null || m > 1;
+            if (p == null) {
+                p = p0.sub(m == 1 ? step : step.mul(m));
+            }
+
+            if (p.sub(p0).absSquared() < toleranceSquared) {
+                rootHolder[0] = p;
+                return i;
+            }
+            lastP0 = p0;
+            lastFAbsSquared = f.absSquared();
+            p0 = p;
+            lastStep = step;
+            lastMultiplier = m;
+        }
+        // this means we didn't find it under the max # of iterations
+        rootHolder[0] = null;
+        return 0;
+    }
+}
@@ -2,10 +2,28 @@ package gsmith.math;
 
 /** Use MuellersMethod for finding roots of an equation.
  */
-public class MuellersMethod implements ComplexRootFinder {
+public class MuellersMethod implements ResumableRootFinder {
     @Override
     public int find(Complex x0, Complex x1, Complex x2, double tolerance,
             int maxIterations, ComplexEquation eq, Complex[] rootHolder) {
+        return find(x0, x1, x2, 2, tolerance, maxIterations, eq, rootHolder, null);
+    }
+
+    @Override
+    public int getStateSize() {
+        return 3;
+    }
+
+    @Override
+    public int resume(Complex[] state, int iterations, double tolerance, int maxIterations, ComplexEquation eq,
+            Complex[] rootHolder) {
+        // the first iteration is numbered 2
+        return find(state[0], state[1], state[2], Math.max(iterations + 1, 2), tolerance, maxIterations, eq,
+                rootHolder, state);
+    }
+
+    private int find(Complex x0, Complex x1, Complex x2, int start, double tolerance,
+            int maxIterations, ComplexEquation eq, Complex[] rootHolder, Complex[] state) {
         // x1 - x0
         Complex h1 = x1.sub(x0);
         // x2 - x1
@@ -17,15 +35,16 @@ public class MuellersMethod implements ComplexRootFinder {
         // (delta2 - delta1) / (h2 + h1)
         Complex d = delta2.sub(delta1).div(h2.add(h1));
 
+        double toleranceSquared = tolerance * tolerance;
         Complex D, E, h, p, b;
-        for (int i = 2; i <= maxIterations; i++) {
+        for (int i = start; i <= maxIterations; i++) {
             // b = delta2 + (h2 * d)
             b = delta2.add(h2.mul(d));
 
             // D = (b^2 - 4*f(x2)*d) ^ .5
-            D = b.pow(2.0).sub(eq.f(x2).mul(d).mul(4)).pow(0.5);
+            D = b.square().sub(eq.f(x2).mul(d).mul(4)).sqrtPrincipal();
 
-            if (b.sub(D).abs() < b.add(D).abs()) {
+            if (b.sub(D).absSquared() < b.add(D).absSquared()) {
                 E = b.add(D);
             }
             else {
@@ -42,7 +61,7 @@ public class MuellersMethod implements ComplexRootFinder {
             p = x2.add(h);
 
             // found it
-            if (h.abs() < tolerance) {
+            if (h.absSquared() < toleranceSquared) {
                 rootHolder[0] = p;
                 return i;
             }
@@ -66,6 +85,11 @@ public class MuellersMethod implements ComplexRootFinder {
         }
 
         // we didn't find it under the max # of iterations
+        if (state != null) {
+            state[0] = x0;
+            state[1] = x1;
+            state[2] = x2;
+        }
         rootHolder[0] = null;
         return 0; // failed
     }
@@ -2,7 +2,7 @@ package gsmith.math;
 
 /** Use Newton's method for finding roots of an equation.
  */
-public class NewtonsMethod implements ComplexRootFinder {
+public class NewtonsMethod implements ResumableRootFinder {
     @Override
     public int find(Complex x0, Complex x1, Complex x2, double tolerance,
             int maxIterations, ComplexEquation eq, Complex[] rootHolder) {
@@ -11,10 +11,22 @@ public class NewtonsMethod implements ComplexRootFinder {
 
     public int find(Complex p0, double tolerance, int maxIterations,
             ComplexEquation eq, Complex[] rootHolder) {
+        return find(p0, 1, tolerance, maxIterations, eq, rootHolder, null);
+    }
+
+    @Override
+    public int resume(Complex[] state, int iterations, double tolerance, int maxIterations, ComplexEquation eq,
+            Complex[] rootHolder) {
+        return find(state[0], iterations + 1, tolerance, maxIterations, eq, rootHolder, state);
+    }
+
+    private int find(Complex p0, int start, double tolerance, int maxIterations,
+            ComplexEquation eq, Complex[] rootHolder, Complex[] state) {
+        double toleranceSquared = tolerance * tolerance;
         Complex p;
         Complex f;
         Complex[] fPrime = new Complex[1];
-        for (int i = 1; i <= maxIterations; i++) {
+        for (int i = start; i <= maxIterations; i++) {
             f = eq.f(p0, fPrime);
             // failed -- this would cause division by 0
             if (fPrime[0] == null || fPrime[0].equals(0.0)) {
@@ -22,13 +34,16 @@ public class NewtonsMethod implements ComplexRootFinder {
                 return -1;
             }
             p = p0.sub(f.div(fPrime[0]));
-            if (p.sub(p0).abs() < tolerance) {
+            if (p.sub(p0).absSquared() < toleranceSquared) {
                 rootHolder[0] = p;
                 return i;
             }
             p0 = p;
         }
         // this means we didn't find it under the max # of iterations
+        if (state != null) {
+            state[0] = p0;
+        }
         rootHolder[0] = null;
         return 0;
     }
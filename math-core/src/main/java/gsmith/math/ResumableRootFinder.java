@@ -0,0 +1,30 @@
+package gsmith.math;
+
+/** A root finder that can pick up where an earlier search stopped at its maximum number of iterations, so that
+ * raising the maximum only costs the extra iterations.
+ */
+public interface ResumableRootFinder extends ComplexRootFinder {
+    /** Get the number of points the search state holds. Single-point methods need only the current iterate;
+     * methods like Mueller's need their trailing points too.
+     */
+    default int getStateSize() {
+        return 1;
+    }
+
+    /** Continue finding a root from the specified state. With iterations of 0 and the state holding x0, x1 and x2 (as
+     * many as {@link #getStateSize()}), this is the same as {@link #find}.
+     *
+     * @param state the search state, of at least {@link #getStateSize()} points; if this returns 0, it gets the state
+     *            to resume from.
+     * @param iterations the number of iterations already done, which is the maxIterations of the search that
+     *            stopped, or 0 to start.
+     * @param tolerance the tolerance for when a root estimation is close enough.
+     * @param maxIterations the maximum total number of iterations, including the ones already done.
+     * @param eq the equation.
+     * @param rootHolder a Complex[1] to hold the discovered root.
+     * @return the total number of iterations required to calculate the root, as if the search had never stopped,
+     *         less than 0 for cannot be found, 0 for exceeded maxIterations.
+     */
+    int resume(Complex[] state, int iterations, double tolerance, int maxIterations, ComplexEquation eq,
+            Complex[] rootHolder);
+}
@@ -0,0 +1,234 @@
+package gsmith.math;
+
+import java.util.Arrays;
+
+/** A complex-number polynomial equation that only stores its nonzero terms.
+ * Each term is evaluated with exponentiation by squaring, so for an equation with k terms and order n this takes
+ * O(k log n) work instead of the O(n) of Horner's method in {@link ComplexPolynomial}. This is a win for things like
+ * x^n - 1 at high orders.
+ */
+public final class SparseComplexPolynomial implements ComplexEquation, Cloneable {
+    /**
+     * The powers of the nonzero terms, in increasing order.
+     */
+    private final int[] powers;
+    /**
+     * The coefficients of the nonzero terms.
+     */
+    private final Complex[] coeffs;
+
+    // cached hashCode() and toString()
+    private Integer hashCode = null;
+    private String toString = null;
+
+    /** Constructor from all the coefficients, as in {@link ComplexPolynomial#ComplexPolynomial(Complex...)}.
+     * Coefficients can be null to represent 0.
+     */
+    public SparseComplexPolynomial(Complex... a) {
+        int count = countTerms(a);
+        this.powers = new int[count];
+        this.coeffs = new Complex[count];
+        int t = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != null && !a[i].equals(0.0)) {
+                this.powers[t] = i;
+                this.coeffs[t] = a[i];
+                t++;
+            }
+        }
+    }
+
+    /** Constructor from the nonzero terms.
+     *
+     * @param powers the power of each term, in strictly increasing order.
+     * @param coeffs the coefficient of each term.
+     */
+    public SparseComplexPolynomial(int[] powers, Complex[] coeffs) {
+        if (powers.length != coeffs.length) {
+            throw new IllegalArgumentException("powers and coeffs must be the same length");
+        }
+        for (int i = 0; i < powers.length; i++) {
+            if (powers[i] < 0 || (i > 0 && powers[i] <= powers[i - 1])) {
+                throw new IllegalArgumentException("powers must be non-negative and strictly increasing");
+            }
+        }
+        this.powers = Arrays.copyOf(powers, powers.length);
+        this.coeffs = Arrays.copyOf(coeffs, coeffs.length);
+    }
+
+    /** Copy constructor.
+     */
+    public SparseComplexPolynomial(SparseComplexPolynomial eq) {
+        this(eq.powers, eq.coeffs);
+    }
+
+    /** Count the nonzero coefficients.
+     */
+    public static int countTerms(Complex... a) {
+        int count = 0;
+        for (Complex c : a) {
+            if (c != null && !c.equals(0.0)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Tell if evaluating the specified coefficients term-by-term would be cheaper than Horner's method. Each term
+     * takes about 2 log2(n) multiplies, vs. n multiply-adds for Horner's method.
+     */
+    public static boolean isSparse(Complex... a) {
+        int n = a.length - 1;
+        if (n <= 1) {
+            return false;
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(n);
+        return countTerms(a) * 2 * bits < n;
+    }
+
+    /** Get the order of this polynomial. This is the highest power of x in the equation.
+     */
+    @Override
+    public int getOrder() {
+        return powers.length > 0 ? powers[powers.length - 1] : 0;
+    }
+
+    /** Get the number of nonzero terms.
+     */
+    public int getNumTerms() {
+        return powers.length;
+    }
+
+    /** Get the power of the ith nonzero term.
+     */
+    public int power(int i) {
+        return powers[i];
+    }
+
+    /** Get the coefficient of the ith nonzero term.
+     */
+    public Complex coeff(int i) {
+        return coeffs[i];
+    }
+
+    /** Compute f(x) and its derivatives, summing each term.
+     */
+    @Override
+    public Complex f(Complex x, Complex[] deriv) {
+        int numDerivs = deriv != null ? deriv.length : 0;
+        double re = 0.0;
+        double im = 0.0;
+        double[] dRe = new double[numDerivs];
+        double[] dIm = new double[numDerivs];
+        for (int t = 0; t < powers.length; t++) {
+            int k = powers[t];
+            Complex c = coeffs[t];
+            // start at the lowest power needed for this term, x^(k - numDerivs), and work up from there
+            int lowest = Math.max(k - numDerivs, 0);
+            Complex xp = x.powInt(lowest);
+            for (int p = lowest; p <= k; p++) {
+                // d is the derivative that x^p shows up in, where -1 is f(x) itself
+                int d = k - p - 1;
+                if (d < 0) {
+                    Complex term = c.mul(xp);
+                    re += term.re;
+                    im += term.im;
+                }
+                else {
+                    // the (d + 1)th derivative of c * x^k is c * k * (k - 1) * ... * (k - d) * x^(k - d - 1)
+                    double factor = 1.0;
+                    for (int j = 0; j <= d; j++) {
+                        factor *= k - j;
+                    }
+                    Complex term = c.mul(xp).mul(factor);
+                    dRe[d] += term.re;
+                    dIm[d] += term.im;
+                }
+                if (p < k) {
+                    xp = xp.mul(x);
+                }
+            }
+        }
+        for (int d = 0; d < numDerivs; d++) {
+            deriv[d] = new Complex(dRe[d], dIm[d]);
+        }
+        return new Complex(re, im);
+    }
+
+    /** Get this as a dense polynomial.
+     */
+    public ComplexPolynomial toPolynomial() {
+        Complex[] a = new Complex[getOrder() + 1];
+        Arrays.fill(a, Complex.ZERO);
+        for (int t = 0; t < powers.length; t++) {
+            a[powers[t]] = coeffs[t];
+        }
+        return new ComplexPolynomial(a);
+    }
+
+    @Override
+    public SparseComplexPolynomial clone() {
+        return new SparseComplexPolynomial(this);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hashCode == null) {
+            hashCode = 31 * Arrays.hashCode(this.powers) + Arrays.hashCode(this.coeffs);
+        }
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof SparseComplexPolynomial) {
+            SparseComplexPolynomial other = (SparseComplexPolynomial)o;
+            return Arrays.equals(this.powers, other.powers) && Arrays.equals(this.coeffs, other.coeffs);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        if (toString == null) {
+            StringBuilder buf = new StringBuilder();
+            for (int t = powers.length - 1; t >= 0; t--) {
+                int i = powers[t];
+                Complex coeff = coeffs[t];
+                // other coefficients already written
+                if (buf.length() > 0) {
+                    // check if actually a negative real number
+                    if (coeff.isRealNumber() && coeff.re < 0.0) {
+                        coeff = new Complex(-coeff.re);
+                        buf.append(" - ");
+                    }
+                    else {
+                        buf.append(" + ");
+                    }
+                }
+                // first coefficient written, check if actually a negative real number
+                else if (coeff.isRealNumber() && coeff.re < 0.0) {
+                    coeff = new Complex(-coeff.re);
+                    buf.append("-");
+                }
+                // always write the constant
+                if (i == 0) {
+                    buf.append(coeff);
+                }
+                else {
+                    // write the coefficient if not exactly 1.0
+                    if (!coeff.equals(1.0)) {
+                        buf.append('(').append(coeff).append(')');
+                    }
+                    // write the power
+                    buf.append('x');
+                    if (i != 1) {
+                        buf.append('^').append(i);
+                    }
+                }
+            }
+            toString = buf.toString();
+        }
+        return toString;
+    }
+}
@@ -0,0 +1,321 @@
+package gsmith.math;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A ComplexEquation that evaluates a cheap piecewise polynomial approximation of an expensive equation.
+ * The plane is divided into square cells. Once x has landed in a cell often enough, the exact equation is sampled on
+ * a circle around the cell and a Taylor expansion about the cell's center is recovered with an FFT (a discrete Cauchy
+ * integral). The expansion is then checked against the exact equation at points in the cell, and the cell is only
+ * used if the observed error is within the tolerance; otherwise, that cell always falls back to the exact equation.
+ * <p>
+ * Once the approximate |f(x)| gets within {@link #FALLBACK_FACTOR} times a cell's error bound, the exact equation is
+ * used instead, so the last iterations of a root finder (the ones that decide convergence) see exact values and the
+ * roots found are as accurate as without the surrogate. The iterations before that see slightly different values,
+ * though, so a pixel where the iteration is sensitive to them, near a basin boundary, can take a different number of
+ * iterations or go to another root; this happens at about one pixel in a thousand with Mueller's method, which
+ * builds each step from several earlier values, and rarely with Newton's. This only pays off for equations that are
+ * expensive to evaluate, and for cells of many pixels; polynomials are already cheaper than the surrogate.
+ * <p>
+ * Only f'(x) is approximated; higher derivatives are set to null, unless the exact equation is used.
+ */
+public class SurrogateEquation implements ComplexEquation {
+    /** The default number of samples per cell, and so the maximum number of terms in each expansion.
+     */
+    public static final int DEFAULT_SAMPLES = 32;
+    /** The default tolerance for the approximation error, relative to the largest |f| sampled in the cell.
+     */
+    public static final double DEFAULT_TOLERANCE = 1e-11;
+    /** The default maximum number of cells to track; points in cells past this use the exact equation.
+     */
+    public static final int DEFAULT_MAX_CELLS = 1 << 16;
+    /** How far, relative to the error bound, |f(x)| must be from 0 to keep using the approximation.
+     */
+    public static final double FALLBACK_FACTOR = 1000.0;
+
+    /** The radius of the sampling circle, relative to the cell's circumscribed circle. Errors in the expansion shrink
+     * like (1 / SAMPLE_RADIUS)^samples, as long as the equation is analytic in the sampling circle.
+     */
+    private static final double SAMPLE_RADIUS = 2.0;
+    /** The safety factor applied to the largest error observed when checking a cell.
+     */
+    private static final double ERROR_SAFETY = 4.0;
+    /** The number of points along each side of a cell to check, including the corners.
+     */
+    private static final int CHECK_POINTS = 4;
+    /** Cell indexes beyond this are not cached.
+     */
+    private static final double MAX_INDEX = 1 << 30;
+
+    /** Marker for cells that must use the exact equation.
+     */
+    private static final Cell EXACT = new Cell(0.0, 0.0, 1.0, new double[0], new double[0], Double.POSITIVE_INFINITY);
+
+    private final ComplexEquation exact;
+    private final double cellSize;
+    private final int samples;
+    private final double tolerance;
+    private final int maxCells;
+    private final ConcurrentHashMap<Long, Slot> cells = new ConcurrentHashMap<>();
+    private final AtomicInteger numCells = new AtomicInteger();
+
+    /** Constructor using the default samples, tolerance and maximum cells.
+     *
+     * @param exact the exact equation.
+     * @param cellSize the width of each cell.
+     */
+    public SurrogateEquation(ComplexEquation exact, double cellSize) {
+        this(exact, cellSize, DEFAULT_SAMPLES, DEFAULT_TOLERANCE, DEFAULT_MAX_CELLS);
+    }
+
+    /** Constructor.
+     *
+     * @param exact the exact equation.
+     * @param cellSize the width of each cell.
+     * @param samples the number of samples per cell, a power of 2.
+     * @param tolerance the approximation error allowed, relative to the largest |f| sampled in a cell.
+     * @param maxCells the maximum number of cells to fit.
+     */
+    public SurrogateEquation(ComplexEquation exact, double cellSize, int samples, double tolerance, int maxCells) {
+        if (exact == null) {
+            throw new IllegalArgumentException("missing 'exact'");
+        }
+        if (!(cellSize > 0.0) || Double.isInfinite(cellSize)) {
+            throw new IllegalArgumentException("invalid 'cellSize' value " + cellSize + ", must be greater than 0");
+        }
+        if (samples < 2 || Integer.bitCount(samples) != 1) {
+            throw new IllegalArgumentException("invalid 'samples' value " + samples + ", must be a power of 2");
+        }
+        if (!(tolerance > 0.0)) {
+            throw new IllegalArgumentException("invalid 'tolerance' value " + tolerance + ", must be greater than 0");
+        }
+        this.exact = exact;
+        this.cellSize = cellSize;
+        this.samples = samples;
+        this.tolerance = tolerance;
+        this.maxCells = maxCells;
+    }
+
+    /** Get the exact equation.
+     */
+    public ComplexEquation getExact() {
+        return exact;
+    }
+
+    /** Get the width of each cell.
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /** Get the number of cells visited so far, including ones that haven't been fitted yet.
+     */
+    public int getNumCells() {
+        return numCells.get();
+    }
+
+    @Override
+    public Complex f(Complex x, Complex[] deriv) {
+        double[] out = new double[4];
+        if (approximate(x.re, x.im, out)) {
+            if (deriv != null && deriv.length > 0) {
+                deriv[0] = new Complex(out[2], out[3]);
+                for (int i = 1; i < deriv.length; i++) {
+                    deriv[i] = null;
+                }
+            }
+            return new Complex(out[0], out[1]);
+        }
+        return exact.f(x, deriv);
+    }
+
+    /** Evaluate the approximation of f(x) and f'(x), if x's cell has one and x isn't near a root, for callers that
+     * work over primitives and evaluate the exact equation themselves otherwise.
+     *
+     * @param re the real part of x.
+     * @param im the imaginary part of x.
+     * @param out gets f re, f im, f' re and f' im, if this returns true.
+     * @return true if out was set, false if the exact equation must be used.
+     */
+    public boolean approximate(double re, double im, double[] out) {
+        Cell cell = cell(re, im);
+        if (cell == EXACT) {
+            return false;
+        }
+        cell.evaluate(re, im, out);
+        double limit = FALLBACK_FACTOR * cell.errorBound;
+        return out[0] * out[0] + out[1] * out[1] > limit * limit;
+    }
+
+    @Override
+    public int getOrder() {
+        return exact.getOrder();
+    }
+
+    private Cell cell(double re, double im) {
+        double ix = Math.floor(re / cellSize);
+        double iy = Math.floor(im / cellSize);
+        if (!(Math.abs(ix) < MAX_INDEX && Math.abs(iy) < MAX_INDEX)) {
+            // also catches NaN
+            return EXACT;
+        }
+        Long key = ((long)ix << 32) ^ ((long)iy & 0xffffffffL);
+        Slot slot = cells.get(key);
+        if (slot == null) {
+            if (numCells.get() >= maxCells) {
+                return EXACT;
+            }
+            slot = cells.computeIfAbsent(key, k -> {
+                numCells.incrementAndGet();
+                return new Slot();
+            });
+        }
+        Cell cell = slot.cell;
+        if (cell == null) {
+            // iterations wander over far more of the plane than the picture covers, so only fit a cell once it has
+            // used as many exact evaluations as fitting it would take
+            if (slot.hits.incrementAndGet() != samples + CHECK_POINTS * CHECK_POINTS) {
+                return EXACT;
+            }
+            cell = fit((ix + 0.5) * cellSize, (iy + 0.5) * cellSize);
+            slot.cell = cell;
+        }
+        return cell;
+    }
+
+    /** Fit the expansion for the cell with the specified center.
+     */
+    private Cell fit(double centerRe, double centerIm) {
+        // the circumscribed circle of the cell, and the sampling circle outside it
+        double radius = cellSize * Math.sqrt(0.5);
+        double sampleRadius = SAMPLE_RADIUS * radius;
+
+        double[] re = new double[samples];
+        double[] im = new double[samples];
+        double scale = 0.0;
+        for (int j = 0; j < samples; j++) {
+            double angle = 2.0 * Math.PI * j / samples;
+            Complex y = exact.f(new Complex(centerRe + sampleRadius * Math.cos(angle),
+                    centerIm + sampleRadius * Math.sin(angle)));
+            if (y == null || Double.isNaN(y.re) || Double.isNaN(y.im) ||
+                    Double.isInfinite(y.re) || Double.isInfinite(y.im)) {
+                return EXACT;
+            }
+            re[j] = y.re;
+            im[j] = y.im;
+            scale = Math.max(scale, y.abs());
+        }
+
+        // the forward transform gives samples * a(k) * sampleRadius^k; rescale to powers of u = (x - c) / radius
+        ComplexFFT.transform(re, im, false);
+        double factor = 1.0 / samples;
+        for (int k = 0; k < samples; k++) {
+            re[k] *= factor;
+            im[k] *= factor;
+            factor /= SAMPLE_RADIUS;
+        }
+
+        // drop terms too small to matter anywhere in the cell
+        double allowed = tolerance * Math.max(scale, Double.MIN_NORMAL);
+        int n = samples;
+        double tail = 0.0;
+        while (n > 1) {
+            double t = Math.hypot(re[n - 1], im[n - 1]);
+            if (tail + t > 0.01 * allowed) {
+                break;
+            }
+            tail += t;
+            n--;
+        }
+        double[] cRe = new double[n];
+        double[] cIm = new double[n];
+        System.arraycopy(re, 0, cRe, 0, n);
+        System.arraycopy(im, 0, cIm, 0, n);
+        Cell cell = new Cell(centerRe, centerIm, 1.0 / radius, cRe, cIm, 0.0);
+
+        // check it against the exact equation on a grid over the cell
+        double maxError = 0.0;
+        double[] out = new double[4];
+        Complex[] exactDeriv = new Complex[1];
+        for (int i = 0; i < CHECK_POINTS; i++) {
+            for (int j = 0; j < CHECK_POINTS; j++) {
+                Complex x = new Complex(centerRe + cellSize * ((double)i / (CHECK_POINTS - 1) - 0.5),
+                        centerIm + cellSize * ((double)j / (CHECK_POINTS - 1) - 0.5));
+                Complex y = exact.f(x, exactDeriv);
+                if (y == null) {
+                    return EXACT;
+                }
+                cell.evaluate(x.re, x.im, out);
+                maxError = Math.max(maxError, Math.hypot(out[0] - y.re, out[1] - y.im));
+                if (exactDeriv[0] != null) {
+                    // scale the derivative error by the radius, so it's comparable with an error in f
+                    maxError = Math.max(maxError,
+                            Math.hypot(out[2] - exactDeriv[0].re, out[3] - exactDeriv[0].im) * radius);
+                }
+            }
+        }
+        double errorBound = ERROR_SAFETY * maxError + tail;
+        if (!(errorBound <= allowed)) {
+            return EXACT;
+        }
+        return new Cell(centerRe, centerIm, 1.0 / radius, cRe, cIm, errorBound);
+    }
+
+    @Override
+    public String toString() {
+        return exact.toString();
+    }
+
+    /** A cell, before and after fitting.
+     */
+    private static final class Slot {
+        final AtomicInteger hits = new AtomicInteger();
+        volatile Cell cell;
+    }
+
+    /** The expansion for one cell, in powers of (x - center) / radius.
+     */
+    private static final class Cell {
+        final double centerRe;
+        final double centerIm;
+        final double invRadius;
+        final double[] re;
+        final double[] im;
+        final double errorBound;
+
+        Cell(double centerRe, double centerIm, double invRadius, double[] re, double[] im, double errorBound) {
+            this.centerRe = centerRe;
+            this.centerIm = centerIm;
+            this.invRadius = invRadius;
+            this.re = re;
+            this.im = im;
+            this.errorBound = errorBound;
+        }
+
+        /** Evaluate the expansion and its derivative at x, into f re, f im, f' re, f' im.
+         */
+        void evaluate(double xRe, double xIm, double[] out) {
+            double uRe = (xRe - centerRe) * invRadius;
+            double uIm = (xIm - centerIm) * invRadius;
+            // Horner's method for p(u) and p'(u) together
+            int n = re.length - 1;
+            double yRe = re[n];
+            double yIm = im[n];
+            double dRe = 0.0;
+            double dIm = 0.0;
+            for (int k = n - 1; k >= 0; k--) {
+                double t = dRe * uRe - dIm * uIm + yRe;
+                dIm = dRe * uIm + dIm * uRe + yIm;
+                dRe = t;
+                t = yRe * uRe - yIm * uIm + re[k];
+                yIm = yRe * uIm + yIm * uRe + im[k];
+                yRe = t;
+            }
+            out[0] = yRe;
+            out[1] = yIm;
+            // d/dx = d/du * du/dx
+            out[2] = dRe * invRadius;
+            out[3] = dIm * invRadius;
+        }
+    }
+}